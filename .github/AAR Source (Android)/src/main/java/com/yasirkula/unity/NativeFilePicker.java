@@ -20,6 +20,9 @@ public class NativeFilePicker
 {
 	public static boolean UseDefaultFilePickerApp = false; // false: Intent.createChooser is used to select the file picker app
 	public static boolean PermissionFreeMode = false; // true: No permission will be asked (use at your own risk)
+	public static boolean ComputeFileDigests = false; // true: SHA-256 digests of the picked files are returned with the results (files that are copied are hashed while they're copied)
+	public static boolean VerifyExportedFiles = false; // true: Exported documents are read back and their SHA-256 digests are compared with the exported files' digests, failed transfers are resumed only if this is enabled
+	public static boolean LinkPickedFiles = false; // true: Picked files that are on the same filesystem as the destination directory are hard linked instead of copied (modifying a linked file also modifies the original file)
 
 	public static void PickFiles( Context context, final NativeFilePickerResultReceiver resultReceiver, final boolean selectMultiple, final String savePath, final String[] mimes, final String title )
 	{
@@ -49,7 +52,56 @@ public class NativeFilePicker
 		( (Activity) context ).getFragmentManager().beginTransaction().add( 0, request ).commitAllowingStateLoss();
 	}
 
+	public static void PickFileStream( Context context, final NativeFilePickerResultReceiver resultReceiver, final String[] mimes, final String title )
+	{
+		if( CheckPermission( context, true ) != 1 )
+		{
+			resultReceiver.OnFileStreamPicked( 0 );
+			return;
+		}
+
+		ArrayList<String> mimesList = new ArrayList<String>( mimes.length );
+		for( int i = 0; i < mimes.length; i++ )
+			mimesList.add( mimes[i] );
+
+		Bundle bundle = new Bundle();
+		bundle.putBoolean( NativeFilePickerPickFragment.SELECT_MULTIPLE_ID, false );
+		bundle.putBoolean( NativeFilePickerPickFragment.OPEN_STREAM_ID, true );
+		bundle.putStringArrayList( NativeFilePickerPickFragment.MIMES_ID, mimesList );
+		bundle.putString( NativeFilePickerPickFragment.TITLE_ID, title );
+
+		final Fragment request = new NativeFilePickerPickFragment( resultReceiver );
+		request.setArguments( bundle );
+
+		( (Activity) context ).getFragmentManager().beginTransaction().add( 0, request ).commitAllowingStateLoss();
+	}
+
+	public static void PickFolder( Context context, final NativeFilePickerResultReceiver resultReceiver, final String savePath, final String title )
+	{
+		if( !CanPickFolder() || CheckPermission( context, true ) != 1 )
+		{
+			resultReceiver.OnFolderPicked( "" );
+			return;
+		}
+
+		Bundle bundle = new Bundle();
+		bundle.putBoolean( NativeFilePickerPickFragment.PICK_FOLDER_ID, true );
+		bundle.putString( NativeFilePickerPickFragment.SAVE_PATH_ID, savePath );
+		bundle.putStringArrayList( NativeFilePickerPickFragment.MIMES_ID, new ArrayList<String>() );
+		bundle.putString( NativeFilePickerPickFragment.TITLE_ID, title );
+
+		final Fragment request = new NativeFilePickerPickFragment( resultReceiver );
+		request.setArguments( bundle );
+
+		( (Activity) context ).getFragmentManager().beginTransaction().add( 0, request ).commitAllowingStateLoss();
+	}
+
 	public static void ExportFiles( Context context, final NativeFilePickerResultReceiver resultReceiver, final String[] files, final int dummyParameter ) // Having an array as last parameter can cause Unity to crash
+	{
+		ExportFiles( context, resultReceiver, files, NativeFilePickerExportFragment.CONFLICT_POLICY_RENAME, dummyParameter );
+	}
+
+	public static void ExportFiles( Context context, final NativeFilePickerResultReceiver resultReceiver, final String[] files, final int conflictPolicy, final int dummyParameter )
 	{
 		if( CheckPermission( context, false ) != 1 )
 		{
@@ -63,6 +115,7 @@ public class NativeFilePicker
 
 		Bundle bundle = new Bundle();
 		bundle.putStringArrayList( NativeFilePickerExportFragment.FILES_ID, filesList );
+		bundle.putInt( NativeFilePickerExportFragment.CONFLICT_POLICY_ID, conflictPolicy );
 
 		final Fragment request = new NativeFilePickerExportFragment( resultReceiver );
 		request.setArguments( bundle );
@@ -70,9 +123,34 @@ public class NativeFilePicker
 		( (Activity) context ).getFragmentManager().beginTransaction().add( 0, request ).commitAllowingStateLoss();
 	}
 
+	// Exports generated content (e.g. a screenshot) without writing it to a temporary file first. MIME type is determined from the filename if it's empty
+	public static void ExportBytes( Context context, final NativeFilePickerResultReceiver resultReceiver, final byte[] bytes, final String filename, final String mimeType )
+	{
+		ExportSources( context, resultReceiver, new NativeFilePickerExportSource[] { NativeFilePickerExportSource.fromBytes( bytes, filename, mimeType ) }, NativeFilePickerExportFragment.CONFLICT_POLICY_RENAME );
+	}
+
+	// Sources can also be created from ByteBuffers or InputStreams by other native plugins. Unlike ExportFiles, storage permission isn't checked
+	public static void ExportSources( Context context, final NativeFilePickerResultReceiver resultReceiver, final NativeFilePickerExportSource[] sources, final int conflictPolicy )
+	{
+		ArrayList<NativeFilePickerExportSource> sourcesList = new ArrayList<NativeFilePickerExportSource>( sources.length );
+		for( int i = 0; i < sources.length; i++ )
+			sourcesList.add( sources[i] );
+
+		Bundle bundle = new Bundle();
+		bundle.putInt( NativeFilePickerExportFragment.CONFLICT_POLICY_ID, conflictPolicy );
+
+		final Fragment request = new NativeFilePickerExportFragment( resultReceiver, sourcesList );
+		request.setArguments( bundle );
+
+		( (Activity) context ).getFragmentManager().beginTransaction().add( 0, request ).commitAllowingStateLoss();
+	}
+
 	@TargetApi( Build.VERSION_CODES.M )
 	public static int CheckPermission( Context context, final boolean readPermissionOnly )
 	{
+		// Called before the file picker is launched, so it's a good time to probe the device in the background
+		NativeFilePickerDeviceCapabilities.probeAsync( context, false );
+
 		if( PermissionFreeMode )
 			return 1;
 
@@ -132,6 +210,11 @@ public class NativeFilePicker
 		return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
 	}
 
+	public static boolean CanPickFolder()
+	{
+		return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+	}
+
 	public static boolean CanExportFiles()
 	{
 		return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
@@ -0,0 +1,58 @@
+package com.yasirkula.unity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+// Byte arrays used while copying files are reused across files and import/export operations to reduce GC pressure. Buffer size
+// is determined from the file size: small files don't need large buffers whereas large files are copied with fewer read/write calls
+public class NativeFilePickerBufferPool
+{
+	private static final int MIN_BUFFER_SIZE_SHIFT = 13; // 8 KB
+	private static final int MAX_BUFFER_SIZE_SHIFT = 18; // 256 KB
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024; // Used when file size is unknown
+	private static final int MAX_POOLED_BUFFERS_PER_SIZE = 4;
+
+	private static final ArrayList<ArrayDeque<byte[]>> pools = new ArrayList<ArrayDeque<byte[]>>( MAX_BUFFER_SIZE_SHIFT - MIN_BUFFER_SIZE_SHIFT + 1 );
+
+	static
+	{
+		for( int i = MIN_BUFFER_SIZE_SHIFT; i <= MAX_BUFFER_SIZE_SHIFT; i++ )
+			pools.add( new ArrayDeque<byte[]>( MAX_POOLED_BUFFERS_PER_SIZE ) );
+	}
+
+	// Buffer will be approximately 1/16th of the file (within 8 KB-256 KB range)
+	public static byte[] acquire( long fileSize )
+	{
+		int sizeShift;
+		if( fileSize <= 0L )
+			sizeShift = 31 - Integer.numberOfLeadingZeros( DEFAULT_BUFFER_SIZE );
+		else
+			sizeShift = Math.max( MIN_BUFFER_SIZE_SHIFT, Math.min( MAX_BUFFER_SIZE_SHIFT, 64 - Long.numberOfLeadingZeros( Math.max( 1L, fileSize >> 4 ) - 1L ) ) );
+
+		synchronized( pools )
+		{
+			ArrayDeque<byte[]> pool = pools.get( sizeShift - MIN_BUFFER_SIZE_SHIFT );
+			if( !pool.isEmpty() )
+				return pool.pop();
+		}
+
+		return new byte[1 << sizeShift];
+	}
+
+	public static void release( byte[] buffer )
+	{
+		if( buffer == null || Integer.bitCount( buffer.length ) != 1 )
+			return;
+
+		int sizeShift = 31 - Integer.numberOfLeadingZeros( buffer.length );
+		if( sizeShift < MIN_BUFFER_SIZE_SHIFT || sizeShift > MAX_BUFFER_SIZE_SHIFT )
+			return;
+
+		synchronized( pools )
+		{
+			ArrayDeque<byte[]> pool = pools.get( sizeShift - MIN_BUFFER_SIZE_SHIFT );
+			if( pool.size() < MAX_POOLED_BUFFERS_PER_SIZE )
+				pool.push( buffer );
+		}
+	}
+}
\ No newline at end of file
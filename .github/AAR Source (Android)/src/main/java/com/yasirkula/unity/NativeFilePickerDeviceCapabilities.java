@@ -0,0 +1,266 @@
+package com.yasirkula.unity;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Environment;
+import android.util.Log;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+
+// Device capabilities that are expensive to determine (MIUI status, secondary storage roots and the availability of file picker apps) are
+// probed once per process on a background thread. Only the MIUI status is saved in SharedPreferences (and discarded when the probe logic or the
+// OS build changes) since file picker apps can be (un)installed and storage volumes can change while the app isn't running. Until the probe
+// completes, the main thread never waits for it: MIUI status is determined via SystemProperties reflection (cheap, unlike forking getprop) and
+// file picker apps are assumed to be available
+public class NativeFilePickerDeviceCapabilities
+{
+	private static final String PREFS_NAME = "NativeFilePickerDeviceCapabilities";
+	private static final String PREFS_VERSION_KEY = "Version";
+	private static final String PREFS_IS_XIAOMI_OR_MIUI_KEY = "IsXiaomiOrMIUI";
+	private static final int PROBE_VERSION = 1; // Increment it when the probe logic changes so that the saved results are discarded
+
+	private static final String[] PICKER_ACTIONS = new String[] { Intent.ACTION_GET_CONTENT, Intent.ACTION_OPEN_DOCUMENT, Intent.ACTION_CREATE_DOCUMENT, Intent.ACTION_OPEN_DOCUMENT_TREE };
+
+	// Credit: https://gist.github.com/PauloLuan/4bcecc086095bce28e22
+	private static final String[] POSSIBLE_STORAGE_ROOTS = new String[] { "/storage", "/mnt", "/storage/removable",
+			"/removable", "/data", "/mnt/media_rw", "/mnt/sdcard0" };
+
+	private static class Capabilities
+	{
+		public boolean isXiaomiOrMIUI;
+		public String[] secondaryStorageRoots;
+		public HashSet<String> availablePickerActions;
+	}
+
+	private static volatile Capabilities capabilities;
+	private static CountDownLatch probeLatch;
+	private static volatile int isXiaomiOrMIUI = 0; // Determined without waiting for the probe. 1: true, -1: false
+
+	// Safe to call multiple times, the device is probed only once per process unless forceProbe is true (e.g. storage volumes have changed)
+	public static void probeAsync( Context context, boolean forceProbe )
+	{
+		final Context appContext = context.getApplicationContext();
+		final CountDownLatch latch;
+		synchronized( NativeFilePickerDeviceCapabilities.class )
+		{
+			if( probeLatch != null && !forceProbe )
+				return;
+
+			latch = probeLatch = new CountDownLatch( 1 );
+		}
+
+		new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					capabilities = probe( appContext );
+				}
+				catch( Exception e )
+				{
+					Log.e( "Unity", "Exception:", e );
+				}
+				finally
+				{
+					latch.countDown();
+				}
+			}
+		} ).start();
+	}
+
+	public static boolean isXiaomiOrMIUI()
+	{
+		Capabilities capabilities = NativeFilePickerDeviceCapabilities.capabilities;
+		if( capabilities != null )
+			return capabilities.isXiaomiOrMIUI;
+
+		if( isXiaomiOrMIUI == 0 )
+			isXiaomiOrMIUI = probeXiaomiOrMIUI() ? 1 : -1;
+
+		return isXiaomiOrMIUI > 0;
+	}
+
+	// Returns false only if it's known that no apps can handle the action. Never blocks
+	public static boolean hasPickerApp( String action )
+	{
+		Capabilities capabilities = NativeFilePickerDeviceCapabilities.capabilities;
+		return capabilities == null || capabilities.availablePickerActions.contains( action );
+	}
+
+	// Waits for the probe to complete, so it mustn't be called on the main thread. Returns null if the device wasn't probed
+	public static String[] getSecondaryStorageRoots()
+	{
+		CountDownLatch latch;
+		synchronized( NativeFilePickerDeviceCapabilities.class )
+		{
+			latch = probeLatch;
+		}
+
+		if( latch == null )
+			return null;
+
+		try
+		{
+			latch.await();
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+
+		Capabilities capabilities = NativeFilePickerDeviceCapabilities.capabilities;
+		return ( capabilities != null ) ? capabilities.secondaryStorageRoots : null;
+	}
+
+	// Readable directories that may be secondary storage roots (e.g. SD cards). Context is optional, the app's external files directories are
+	// checked first if it's provided
+	public static String[] findSecondaryStorageRoots( Context context )
+	{
+		String primaryPath = Environment.getExternalStorageDirectory().getAbsolutePath();
+		ArrayList<String> result = new ArrayList<String>();
+
+		if( context != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT )
+		{
+			try
+			{
+				// External files directories are in "<root>/Android/data/<package>/files" format
+				for( File externalFilesDir : context.getExternalFilesDirs( null ) )
+				{
+					if( externalFilesDir == null )
+						continue;
+
+					String path = externalFilesDir.getAbsolutePath();
+					int rootEnd = path.indexOf( "/Android/data/" );
+					if( rootEnd > 0 )
+						addStorageRoot( result, new File( path.substring( 0, rootEnd ) ), primaryPath );
+				}
+			}
+			catch( Exception e )
+			{
+				Log.e( "Unity", "Exception:", e );
+			}
+		}
+
+		// Try paths saved at system environments
+		// Credit: https://stackoverflow.com/a/32088396/2373034
+		String strSDCardPath = System.getenv( "SECONDARY_STORAGE" );
+		if( strSDCardPath == null || strSDCardPath.length() == 0 )
+			strSDCardPath = System.getenv( "EXTERNAL_SDCARD_STORAGE" );
+
+		if( strSDCardPath != null && strSDCardPath.length() > 0 )
+		{
+			for( String path : strSDCardPath.split( ":" ) )
+			{
+				if( path != null && path.length() > 0 )
+					addStorageRoot( result, new File( path ), primaryPath );
+			}
+		}
+
+		// Try most common possible paths
+		for( String root : POSSIBLE_STORAGE_ROOTS )
+		{
+			File[] fileList = new File( root ).listFiles();
+			if( fileList != null )
+			{
+				for( File file : fileList )
+					addStorageRoot( result, file, primaryPath );
+			}
+		}
+
+		return result.toArray( new String[result.size()] );
+	}
+
+	private static void addStorageRoot( ArrayList<String> roots, File root, String primaryPath )
+	{
+		try
+		{
+			String path = root.getAbsolutePath();
+			if( root.isDirectory() && root.canRead() && !path.equalsIgnoreCase( primaryPath ) && !roots.contains( path ) )
+				roots.add( path );
+		}
+		catch( Exception e )
+		{
+		}
+	}
+
+	private static Capabilities probe( Context context )
+	{
+		Capabilities result = new Capabilities();
+
+		SharedPreferences preferences = context.getSharedPreferences( PREFS_NAME, Context.MODE_PRIVATE );
+		String version = PROBE_VERSION + "_" + Build.VERSION.SDK_INT + "_" + Build.FINGERPRINT;
+		if( version.equals( preferences.getString( PREFS_VERSION_KEY, null ) ) )
+			result.isXiaomiOrMIUI = preferences.getBoolean( PREFS_IS_XIAOMI_OR_MIUI_KEY, false );
+		else
+		{
+			result.isXiaomiOrMIUI = isXiaomiOrMIUI();
+			preferences.edit()
+					.putString( PREFS_VERSION_KEY, version )
+					.putBoolean( PREFS_IS_XIAOMI_OR_MIUI_KEY, result.isXiaomiOrMIUI )
+					.apply();
+		}
+
+		result.secondaryStorageRoots = findSecondaryStorageRoots( context );
+		result.availablePickerActions = new HashSet<String>( PICKER_ACTIONS.length );
+
+		PackageManager packageManager = context.getPackageManager();
+		for( String action : PICKER_ACTIONS )
+		{
+			try
+			{
+				Intent intent = new Intent( action );
+				if( !Intent.ACTION_OPEN_DOCUMENT_TREE.equals( action ) ) // ACTION_OPEN_DOCUMENT_TREE doesn't accept MIME types or categories
+				{
+					intent.setType( "*/*" );
+					intent.addCategory( Intent.CATEGORY_OPENABLE );
+				}
+
+				if( !packageManager.queryIntentActivities( intent, PackageManager.MATCH_DEFAULT_ONLY ).isEmpty() )
+					result.availablePickerActions.add( action );
+			}
+			catch( Exception e )
+			{
+				// Assume that the action is available if the query fails
+				Log.e( "Unity", "Exception:", e );
+				result.availablePickerActions.add( action );
+			}
+		}
+
+		// On Android 11+, apps are hidden from the query unless the manifest's <queries> element is kept while merging the manifests (e.g. an older
+		// Android Gradle plug-in can't merge it and the user may remove it). No apps being visible most likely means that, so they're assumed available
+		if( result.availablePickerActions.isEmpty() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.R )
+			Collections.addAll( result.availablePickerActions, PICKER_ACTIONS );
+
+		return result;
+	}
+
+	private static boolean probeXiaomiOrMIUI()
+	{
+		if( "xiaomi".equalsIgnoreCase( Build.MANUFACTURER ) )
+			return true;
+
+		// Check if device is using MIUI
+		// Credit: https://gist.github.com/Muyangmin/e8ec1002c930d8df3df46b306d03315d
+		try
+		{
+			Method getMethod = Class.forName( "android.os.SystemProperties" ).getMethod( "get", String.class );
+			String version = (String) getMethod.invoke( null, "ro.miui.ui.version.name" );
+			return version != null && version.length() > 0;
+		}
+		catch( Exception e )
+		{
+			return false;
+		}
+	}
+}
\ No newline at end of file
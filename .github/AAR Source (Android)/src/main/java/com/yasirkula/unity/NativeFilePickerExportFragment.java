@@ -5,28 +5,32 @@ import android.app.Activity;
 import android.app.Fragment;
 import android.content.ActivityNotFoundException;
 import android.content.Intent;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
-import android.webkit.MimeTypeMap;
 import android.widget.Toast;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Locale;
 
 public class NativeFilePickerExportFragment extends Fragment
 {
 	private static final int EXPORT_FILE_CODE = 625441;
 
 	public static final String FILES_ID = "NFPE_FILES";
+	public static final String CONFLICT_POLICY_ID = "NFPE_CONFLICT_POLICY";
+
+	public static boolean showProgressbar = true; // When enabled, a progressbar will be displayed while the files are exported
+	public static int maxConcurrentExports = 4; // Number of files that are exported simultaneously while exporting multiple files (hides the latency of creating documents)
+	public static int maxExportRetries = 3; // Number of times a failed file transfer is retried. If NativeFilePicker.VerifyExportedFiles is enabled, it's resumed from the last written chunk if the document provider allows it
+
+	// Determines what happens when a file with the same name already exists in the export directory (only used while exporting multiple files)
+	public static final int CONFLICT_POLICY_RENAME = 0; // Exported file is renamed to "name (1).ext"
+	public static final int CONFLICT_POLICY_OVERWRITE = 1;
+	public static final int CONFLICT_POLICY_SKIP_IF_IDENTICAL = 2; // Existing file is overwritten unless it has the same size and isn't older than the exported file
 
 	private final NativeFilePickerResultReceiver resultReceiver;
-	private ArrayList<String> files;
+	private ArrayList<NativeFilePickerExportSource> sources;
+	private int conflictPolicy;
 
 	public NativeFilePickerExportFragment()
 	{
@@ -38,33 +42,52 @@ public class NativeFilePickerExportFragment extends Fragment
 		this.resultReceiver = resultReceiver;
 	}
 
+	// Exports the given sources instead of the files in the arguments
+	public NativeFilePickerExportFragment( final NativeFilePickerResultReceiver resultReceiver, final ArrayList<NativeFilePickerExportSource> sources )
+	{
+		this.resultReceiver = resultReceiver;
+		this.sources = sources;
+	}
+
 	@Override
 	@TargetApi( Build.VERSION_CODES.KITKAT )
 	public void onCreate( Bundle savedInstanceState )
 	{
 		super.onCreate( savedInstanceState );
+		setRetainInstance( true ); // Preserves resultReceiver and the sources (which may only exist in memory) while the file picker is open, in case the configuration changes
 
 		if( resultReceiver == null )
+		{
+			Log.e( "Unity", "NativeFilePickerExportFragment.resultReceiver became null in onCreate!" );
 			onActivityResult( EXPORT_FILE_CODE, Activity.RESULT_CANCELED, null );
+		}
 		else
 		{
-			files = getArguments().getStringArrayList( FILES_ID );
+			if( sources == null )
+			{
+				ArrayList<String> files = getArguments().getStringArrayList( FILES_ID );
+				sources = new ArrayList<NativeFilePickerExportSource>( files.size() );
+				for( int i = 0; i < files.size(); i++ )
+					sources.add( NativeFilePickerExportSource.fromFile( files.get( i ) ) );
+			}
+
+			conflictPolicy = getArguments().getInt( CONFLICT_POLICY_ID, CONFLICT_POLICY_RENAME );
 
 			Intent intent;
-			if( files.size() == 1 || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP )
+			if( sources.size() == 1 || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP )
 			{
 				// Exporting multiple files isn't supported on this Android version
-				for( int i = files.size() - 1; i >= 1; i-- )
-					files.remove( i );
+				for( int i = sources.size() - 1; i >= 1; i-- )
+					sources.remove( i );
 
 				intent = new Intent( Intent.ACTION_CREATE_DOCUMENT );
-				intent.setType( GetMimeTypeFromFile( files.get( 0 ) ) );
-				intent.putExtra( Intent.EXTRA_TITLE, new File( files.get( 0 ) ).getName() );
+				intent.setType( sources.get( 0 ).mimeType );
+				intent.putExtra( Intent.EXTRA_TITLE, sources.get( 0 ).name );
 				intent.addCategory( Intent.CATEGORY_OPENABLE );
 			}
 			else
 			{
-				// We won't set MIME type here, we will set it for each file separately inside ExportMultipleFilesToDirectory
+				// We won't set MIME type here, we will set it for each file separately inside NativeFilePickerExportOperation
 				intent = new Intent( Intent.ACTION_OPEN_DOCUMENT_TREE );
 				intent.putExtra( "android.content.extra.SHOW_ADVANCED", true );
 				intent.putExtra( "android.content.extra.FANCY", true );
@@ -76,7 +99,8 @@ public class NativeFilePickerExportFragment extends Fragment
 			try
 			{
 				//  MIUI devices have issues with Intent.createChooser on at least Android 11 (#15 and https://stackoverflow.com/questions/67785661/taking-and-picking-photos-on-poco-x3-with-android-11-does-not-work)
-				if( NativeFilePicker.UseDefaultFilePickerApp || ( Build.VERSION.SDK_INT == 30 && NativeFilePickerUtils.IsXiaomiOrMIUI() ) )
+				// If it's known that no apps can handle the intent, it's started directly so that the user is notified instead of seeing an empty chooser
+				if( NativeFilePicker.UseDefaultFilePickerApp || ( Build.VERSION.SDK_INT == 30 && NativeFilePickerUtils.IsXiaomiOrMIUI() ) || !NativeFilePickerDeviceCapabilities.hasPickerApp( intent.getAction() ) )
 					startActivityForResult( intent, EXPORT_FILE_CODE );
 				else
 					startActivityForResult( Intent.createChooser( intent, "" ), EXPORT_FILE_CODE );
@@ -89,135 +113,36 @@ public class NativeFilePickerExportFragment extends Fragment
 		}
 	}
 
-	private String GetMimeTypeFromFile( String file )
-	{
-		int extensionStart = file.lastIndexOf( '.' );
-		if( extensionStart < 0 || extensionStart == file.length() - 1 )
-			return "application/octet-stream";
-
-		String mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension( file.substring( extensionStart + 1 ).toLowerCase( Locale.ENGLISH ) );
-		return ( mimeType == null || mimeType.length() == 0 ) ? "application/octet-stream" : mimeType;
-	}
-
-	@TargetApi( Build.VERSION_CODES.LOLLIPOP )
-	private boolean ExportMultipleFilesToDirectory( ArrayList<String> files, Uri directoryUri )
-	{
-		NativeFilePickerSAFEntry directory = NativeFilePickerSAFEntry.fromTreeUri( getActivity(), directoryUri );
-		if( directory == null )
-		{
-			Log.e( "Unity", "Couldn't access export directory: " + directoryUri.toString() );
-			return false;
-		}
-
-		boolean result = true;
-		for( int i = 0; i < files.size(); i++ )
-		{
-			File file = new File( files.get( i ) );
-			if( !file.exists() )
-			{
-				Log.e( "Unity", "Can't export " + files.get( i ) + ", file doesn't exist!" );
-				continue;
-			}
-
-			NativeFilePickerSAFEntry safFile = directory.createFile( GetMimeTypeFromFile( files.get( i ) ), file.getName() );
-			if( safFile == null )
-			{
-				Log.e( "Unity", "Couldn't create file inside directory: " + directoryUri.toString() + "/" + file.getName() );
-				result = false;
-			}
-
-			try
-			{
-				result &= WriteFileToStream( file, getActivity().getContentResolver().openOutputStream( safFile.getUri(), "rwt" ) );
-			}
-			catch( Exception e )
-			{
-				Log.e( "Unity", "Exception:", e );
-				result = false;
-			}
-		}
-
-		return result;
-	}
-
-	private boolean WriteFileToStream( File file, OutputStream out )
-	{
-		try
-		{
-			InputStream in = new FileInputStream( file );
-			try
-			{
-				byte[] buf = new byte[1024];
-				int len;
-				while( ( len = in.read( buf ) ) > 0 )
-					out.write( buf, 0, len );
-			}
-			finally
-			{
-				try
-				{
-					in.close();
-				}
-				catch( Exception e )
-				{
-					Log.e( "Unity", "Exception:", e );
-				}
-			}
-		}
-		catch( Exception e )
-		{
-			Log.e( "Unity", "Exception:", e );
-			return false;
-		}
-		finally
-		{
-			try
-			{
-				out.close();
-			}
-			catch( Exception e )
-			{
-				Log.e( "Unity", "Exception:", e );
-			}
-		}
-
-		return true;
-	}
-
 	@Override
 	public void onActivityResult( int requestCode, int resultCode, Intent data )
 	{
 		if( requestCode != EXPORT_FILE_CODE )
 			return;
 
-		boolean result = false;
-		if( files == null || files.size() == 0 )
+		NativeFilePickerExportOperation exportOperation = null;
+
+		if( sources == null || sources.size() == 0 )
 			Log.e( "Unity", "Fragment data got reset while exporting files!" );
 		else if( resultCode != Activity.RESULT_OK || data == null || data.getData() == null )
 			Log.d( "Unity", "Export operation cancelled" );
-		else if( files.size() == 1 )
+		else if( sources.size() == 1 && !sources.get( 0 ).exists() )
+			Log.e( "Unity", "Can't export " + sources.get( 0 ).getPath() + ", file doesn't exist!" );
+		else // Files are exported on a separate thread since writing large files to the document provider would otherwise freeze the app
+			exportOperation = new NativeFilePickerExportOperation( getActivity(), resultReceiver, sources, data.getData(), sources.size() > 1, conflictPolicy );
+
+		if( exportOperation == null )
 		{
-			File file = new File( files.get( 0 ) );
-			if( !file.exists() )
-				Log.e( "Unity", "Can't export " + files.get( 0 ) + ", file doesn't exist!" );
-			else
-			{
-				try
-				{
-					result = WriteFileToStream( file, getActivity().getContentResolver().openOutputStream( data.getData(), "rwt" ) );
-				}
-				catch( Exception e )
-				{
-					Log.e( "Unity", "Exception:", e );
-				}
-			}
+			if( resultReceiver != null )
+				resultReceiver.OnFilesExported( false );
+
+			getFragmentManager().beginTransaction().remove( this ).commitAllowingStateLoss();
 		}
+		else if( showProgressbar )
+			getFragmentManager().beginTransaction().remove( this ).add( 0, new NativeFilePickerPickResultFragment( exportOperation ) ).commitAllowingStateLoss();
 		else
-			result = ExportMultipleFilesToDirectory( files, data.getData() );
-
-		if( resultReceiver != null )
-			resultReceiver.OnFilesExported( result );
-
-		getFragmentManager().beginTransaction().remove( this ).commitAllowingStateLoss();
+		{
+			exportOperation.executeInBackground();
+			getFragmentManager().beginTransaction().remove( this ).commitAllowingStateLoss();
+		}
 	}
 }
\ No newline at end of file
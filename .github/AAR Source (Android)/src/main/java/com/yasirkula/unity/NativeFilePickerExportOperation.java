@@ -0,0 +1,528 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Exports files (or other sources) either to a single document (created by ACTION_CREATE_DOCUMENT) or to a document tree (picked by ACTION_OPEN_DOCUMENT_TREE).
+// If the operation is cancelled, the documents that it has created are deleted. Existing documents (including a non-empty document that was picked
+// with ACTION_CREATE_DOCUMENT) are never deleted, but the ones that were being overwritten at that moment can't be restored, either
+@TargetApi( Build.VERSION_CODES.KITKAT )
+public class NativeFilePickerExportOperation extends NativeFilePickerOperation
+{
+	private static final long RETRY_DELAY = 1000L; // Multiplied by the attempt number
+
+	private class WriteProgress implements NativeFilePickerFileTransfer.Listener
+	{
+		public final long expectedBytes;
+		public long writtenBytes;
+		public final MessageDigest digest; // Digest of the written bytes, it's carried over to the resumed transfers. Null if VerifyExportedFiles is disabled
+
+		public WriteProgress( long expectedBytes )
+		{
+			this.expectedBytes = expectedBytes;
+			digest = NativeFilePicker.VerifyExportedFiles ? NativeFilePickerFileTransfer.createDigest() : null;
+		}
+
+		@Override
+		public boolean isCancelled()
+		{
+			return progressChannel.isCancelled();
+		}
+
+		@Override
+		public void onBytesTransferred( long bytes )
+		{
+			// Sources whose sizes aren't known beforehand (or files that are growing) increase the total size as they're written
+			if( writtenBytes + bytes > expectedBytes )
+				progressChannel.addTotalBytes( writtenBytes + bytes - Math.max( writtenBytes, expectedBytes ) );
+
+			writtenBytes += bytes;
+			progressChannel.addProcessedBytes( bytes );
+		}
+
+		// Discards the progress of the bytes after the checkpoint since they'll be written again. The checkpoint must either be 0 or writtenBytes
+		// since the digest can't be rewound to an arbitrary position
+		public void rewind( long checkpoint )
+		{
+			if( writtenBytes > checkpoint )
+			{
+				progressChannel.addProcessedBytes( checkpoint - writtenBytes );
+				writtenBytes = checkpoint;
+			}
+
+			if( checkpoint == 0L && digest != null )
+				digest.reset();
+		}
+	}
+
+	private static class ExportedFile
+	{
+		public final NativeFilePickerExportSource source;
+		public String filename; // Name of the document that will be created, null if an existing document is overwritten
+		public Uri documentUri;
+		public String error; // Null if the file was exported successfully (or skipped)
+
+		public ExportedFile( NativeFilePickerExportSource source )
+		{
+			this.source = source;
+		}
+	}
+
+	private final Context context;
+	private final ArrayList<NativeFilePickerExportSource> sources;
+	private final Uri destinationUri;
+	private final boolean exportToDirectory;
+	private final int conflictPolicy;
+
+	private final ArrayList<Uri> createdDocuments = new ArrayList<Uri>(); // Guarded by itself since the documents are created simultaneously
+	private volatile boolean success;
+
+	public NativeFilePickerExportOperation( final Context context, final NativeFilePickerResultReceiver resultReceiver, final ArrayList<NativeFilePickerExportSource> sources, final Uri destinationUri, final boolean exportToDirectory, final int conflictPolicy )
+	{
+		super( resultReceiver );
+
+		this.context = context;
+		this.sources = sources;
+		this.destinationUri = destinationUri;
+		this.exportToDirectory = exportToDirectory;
+		this.conflictPolicy = conflictPolicy;
+	}
+
+	@Override
+	public void execute()
+	{
+		try
+		{
+			long totalBytes = 0L;
+			for( int i = 0; i < sources.size(); i++ )
+				totalBytes += Math.max( 0L, sources.get( i ).length() );
+
+			progressChannel.startTransfer( totalBytes, sources.size() );
+
+			if( exportToDirectory )
+				success = exportFilesToDirectory();
+			else
+			{
+				// The document is usually created by the file picker, in which case it's still deleted if the operation is cancelled since it'd be
+				// incomplete. But the user may also pick an existing document to overwrite it, which mustn't be deleted
+				if( isEmptyDocument( destinationUri ) )
+					createdDocuments.add( destinationUri );
+				exportFile( sources.get( 0 ), destinationUri );
+				success = !progressChannel.isCancelled();
+			}
+
+			if( progressChannel.isCancelled() )
+				deleteCreatedDocuments();
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+		}
+		finally
+		{
+			progressChannel.finish();
+		}
+	}
+
+	// Target documents are determined sequentially, so that the exported files' names don't depend on the order in which the documents are created.
+	// Then, the documents are created and written on a bounded thread pool since creating and opening a document is an IPC call whose latency
+	// dominates the export time of small files. Errors are collected per file and logged in the order of the files
+	@TargetApi( Build.VERSION_CODES.LOLLIPOP )
+	private boolean exportFilesToDirectory() throws InterruptedException
+	{
+		final NativeFilePickerSAFEntry directory = NativeFilePickerSAFEntry.fromTreeUri( context, destinationUri );
+		if( directory == null )
+		{
+			Log.e( "Unity", "Couldn't access export directory: " + destinationUri.toString() );
+			return false;
+		}
+
+		// Existing documents are indexed with a single query, so that conflicts can be resolved without querying the document provider for each file.
+		// Names of the documents that will be created are reserved in this map with null values
+		HashMap<String, NativeFilePickerSAFEntry> existingFiles = new HashMap<String, NativeFilePickerSAFEntry>();
+		ArrayList<NativeFilePickerSAFEntry> existingFileList = directory.listFiles();
+		if( existingFileList != null )
+		{
+			for( NativeFilePickerSAFEntry existingFile : existingFileList )
+			{
+				String name = existingFile.getName();
+				if( name != null )
+					existingFiles.put( name, existingFile );
+			}
+		}
+
+		final ExportedFile[] exportedFiles = new ExportedFile[sources.size()];
+		int filesToExport = 0;
+		for( int i = 0; i < sources.size(); i++ )
+		{
+			ExportedFile exportedFile = exportedFiles[i] = new ExportedFile( sources.get( i ) );
+			NativeFilePickerExportSource source = exportedFile.source;
+			if( !source.exists() )
+			{
+				exportedFile.error = "file doesn't exist";
+				progressChannel.addProcessedFiles( 1 );
+				continue;
+			}
+
+			NativeFilePickerSAFEntry existingFile = existingFiles.get( source.name );
+			if( existingFile != null && existingFile.isFile() && conflictPolicy != NativeFilePickerExportFragment.CONFLICT_POLICY_RENAME )
+			{
+				if( conflictPolicy == NativeFilePickerExportFragment.CONFLICT_POLICY_SKIP_IF_IDENTICAL && source.lastModified() > 0L && existingFile.length() == source.length() && existingFile.lastModified() >= source.lastModified() )
+				{
+					Log.d( "Unity", "Skipped exporting " + source.getPath() + ", it's identical to the existing file" );
+					progressChannel.addTotalBytes( -source.length() );
+					progressChannel.addProcessedFiles( 1 );
+					continue;
+				}
+
+				exportedFile.documentUri = existingFile.getUri(); // Overwritten via the "rwt" mode
+			}
+			else
+			{
+				// Some document providers silently rename clashing files while others fail, so the unique name is determined here
+				exportedFile.filename = existingFiles.containsKey( source.name ) ? getUniqueFilename( source.name, existingFiles ) : source.name;
+				existingFiles.put( exportedFile.filename, null );
+			}
+
+			filesToExport++;
+		}
+
+		if( filesToExport > 0 )
+		{
+			ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, Math.min( NativeFilePickerExportFragment.maxConcurrentExports, filesToExport ) ) );
+			try
+			{
+				for( final ExportedFile exportedFile : exportedFiles )
+				{
+					if( exportedFile.error != null || ( exportedFile.documentUri == null && exportedFile.filename == null ) )
+						continue;
+
+					executor.execute( new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							if( !progressChannel.isCancelled() )
+								exportFileToDirectory( exportedFile, directory );
+						}
+					} );
+				}
+			}
+			finally
+			{
+				executor.shutdown();
+			}
+
+			while( !executor.awaitTermination( 1L, TimeUnit.SECONDS ) )
+			{
+				if( progressChannel.isCancelled() )
+					executor.shutdownNow();
+			}
+		}
+
+		if( progressChannel.isCancelled() )
+			return false;
+
+		boolean result = true;
+		for( ExportedFile exportedFile : exportedFiles )
+		{
+			if( exportedFile.error != null )
+			{
+				Log.e( "Unity", "Couldn't export " + exportedFile.source.getPath() + ": " + exportedFile.error );
+				result = false;
+			}
+		}
+
+		return result;
+	}
+
+	@TargetApi( Build.VERSION_CODES.LOLLIPOP )
+	private void exportFileToDirectory( ExportedFile exportedFile, NativeFilePickerSAFEntry directory )
+	{
+		try
+		{
+			if( exportedFile.documentUri == null )
+			{
+				NativeFilePickerSAFEntry safFile = directory.createFile( exportedFile.source.mimeType, exportedFile.filename );
+				if( safFile == null )
+				{
+					exportedFile.error = "couldn't create file inside directory: " + destinationUri.toString() + "/" + exportedFile.filename;
+					progressChannel.addTotalBytes( -Math.max( 0L, exportedFile.source.length() ) );
+					progressChannel.addProcessedFiles( 1 );
+					return;
+				}
+
+				exportedFile.documentUri = safFile.getUri();
+				synchronized( createdDocuments )
+				{
+					createdDocuments.add( exportedFile.documentUri );
+				}
+			}
+
+			exportFile( exportedFile.source, exportedFile.documentUri );
+		}
+		catch( Exception e )
+		{
+			exportedFile.error = e.toString();
+		}
+	}
+
+	// Throws an exception if the source couldn't be exported. Returns normally if the operation is cancelled. Failed transfers are retried a few
+	// times. If VerifyExportedFiles is enabled, they're resumed from the last chunk that was written to the document (if both the source and the
+	// document provider allow it), so large files that are exported to flaky document providers don't restart from zero
+	private void exportFile( NativeFilePickerExportSource source, Uri documentUri ) throws IOException
+	{
+		WriteProgress writeProgress = new WriteProgress( Math.max( 0L, source.length() ) );
+		try
+		{
+			for( int attempt = 0; ; attempt++ )
+			{
+				try
+				{
+					writeToDocument( source, documentUri, writeProgress );
+					return;
+				}
+				catch( IOException e )
+				{
+					if( progressChannel.isCancelled() )
+						return;
+
+					if( attempt >= NativeFilePickerExportFragment.maxExportRetries || !source.canResume() )
+						throw e;
+
+					Log.w( "Unity", "Exporting " + source.getPath() + " failed after " + writeProgress.writtenBytes + " bytes, retrying: " + e );
+				}
+
+				try
+				{
+					Thread.sleep( RETRY_DELAY * ( attempt + 1 ) );
+				}
+				catch( InterruptedException e )
+				{
+					return; // Operation was cancelled
+				}
+
+				if( progressChannel.isCancelled() )
+					return;
+			}
+		}
+		finally
+		{
+			// Exclude the bytes that weren't written (e.g. the export failed)
+			if( writeProgress.writtenBytes < writeProgress.expectedBytes )
+				progressChannel.addTotalBytes( writeProgress.writtenBytes - writeProgress.expectedBytes );
+
+			progressChannel.addProcessedFiles( 1 );
+		}
+	}
+
+	// If some bytes were written in a previous attempt and VerifyExportedFiles is enabled, the document is reopened without truncating it and the
+	// transfer resumes from the last written byte. Otherwise (or if the document can't be reopened that way), the transfer restarts from zero
+	private void writeToDocument( NativeFilePickerExportSource source, Uri documentUri, WriteProgress writeProgress ) throws IOException
+	{
+		ContentResolver resolver = context.getContentResolver();
+		ParcelFileDescriptor output = null;
+		try
+		{
+			long checkpoint = writeProgress.writtenBytes;
+			if( checkpoint > 0L )
+			{
+				// Without verification, there's no way to tell whether the bytes that were written before the failure reached the document intact
+				if( writeProgress.digest != null )
+				{
+					try
+					{
+						output = resolver.openFileDescriptor( documentUri, "rw" );
+					}
+					catch( Exception e )
+					{
+						Log.w( "Unity", "Couldn't reopen " + documentUri + " to resume the transfer: " + e );
+					}
+				}
+
+				// Some document providers (e.g. cloud storage providers) hand out a new temporary file or a pipe each time the document is opened,
+				// the previously written bytes would be missing from such documents
+				if( output == null || output.getStatSize() < checkpoint || !NativeFilePickerFileTransfer.isSeekable( output ) )
+				{
+					checkpoint = 0L;
+					if( output != null )
+					{
+						output.close();
+						output = null;
+					}
+				}
+
+				writeProgress.rewind( checkpoint );
+			}
+
+			if( output == null )
+				output = resolver.openFileDescriptor( documentUri, "rwt" );
+			if( output == null )
+				throw new IOException( "Couldn't open file descriptor: " + documentUri );
+
+			// Source's digest is calculated while it's being written, so verifying the document only requires reading the document back
+			source.writeTo( output, checkpoint, writeProgress, writeProgress.digest );
+
+			// Document provider may report an error via the pipe (if the document is written via a pipe). Closing the descriptor may upload the
+			// document (e.g. cloud storage providers), so its errors aren't ignored either
+			output.checkError();
+			output.close();
+			output = null;
+
+			if( writeProgress.digest != null && !progressChannel.isCancelled() )
+				verifyDocument( source, documentUri, writeProgress );
+		}
+		finally
+		{
+			try
+			{
+				if( output != null )
+					output.close();
+			}
+			catch( Exception e )
+			{
+				Log.e( "Unity", "Exception:", e );
+			}
+		}
+	}
+
+	// Document providers don't report the digests of the documents, so the document is read back and hashed. Computing the source's digest
+	// consumes it, so the whole source is written again in the next attempt if the document can't be verified
+	private void verifyDocument( NativeFilePickerExportSource source, Uri documentUri, WriteProgress writeProgress ) throws IOException
+	{
+		String expectedDigest = NativeFilePickerFileTransfer.toHexString( writeProgress.digest.digest() );
+		String digest;
+		try
+		{
+			InputStream input = context.getContentResolver().openInputStream( documentUri );
+			if( input == null )
+				throw new IOException( "Couldn't open input stream: " + documentUri );
+
+			digest = NativeFilePickerFileTransfer.computeDigest( input, writeProgress.writtenBytes );
+		}
+		catch( IOException e )
+		{
+			writeProgress.rewind( 0L );
+			throw e;
+		}
+
+		if( !digest.equals( expectedDigest ) )
+		{
+			writeProgress.rewind( 0L );
+			throw new IOException( "Exported document's digest (" + digest + ") doesn't match the source's digest (" + expectedDigest + ")" );
+		}
+
+		Log.d( "Unity", "Verified exported document " + documentUri + " of " + source.getPath() + ", SHA-256: " + digest );
+	}
+
+	// Returns false if the document has content or its size couldn't be determined
+	private boolean isEmptyDocument( Uri documentUri )
+	{
+		ContentResolver resolver = context.getContentResolver();
+		Cursor c = null;
+		try
+		{
+			c = resolver.query( documentUri, new String[] { OpenableColumns.SIZE }, null, null, null );
+			if( c != null && c.moveToFirst() && !c.isNull( 0 ) )
+				return c.getLong( 0 ) == 0L;
+		}
+		catch( Exception e )
+		{
+			Log.w( "Unity", "Couldn't query the size of " + documentUri + ": " + e );
+		}
+		finally
+		{
+			if( c != null )
+				c.close();
+		}
+
+		// Size column is optional, so the document's file descriptor is stat'ed instead
+		ParcelFileDescriptor descriptor = null;
+		try
+		{
+			descriptor = resolver.openFileDescriptor( documentUri, "r" );
+			return descriptor != null && descriptor.getStatSize() == 0L;
+		}
+		catch( Exception e )
+		{
+			Log.w( "Unity", "Couldn't determine the size of " + documentUri + ": " + e );
+			return false;
+		}
+		finally
+		{
+			try
+			{
+				if( descriptor != null )
+					descriptor.close();
+			}
+			catch( Exception e )
+			{
+			}
+		}
+	}
+
+	private void deleteCreatedDocuments()
+	{
+		for( int i = 0; i < createdDocuments.size(); i++ )
+		{
+			try
+			{
+				DocumentsContract.deleteDocument( context.getContentResolver(), createdDocuments.get( i ) );
+			}
+			catch( Exception e )
+			{
+				Log.e( "Unity", "Exception:", e );
+			}
+		}
+
+		Log.d( "Unity", "Deleted " + createdDocuments.size() + " partially exported document(s)" );
+	}
+
+	// Returns "name (1).ext", "name (2).ext" and so on
+	private static String getUniqueFilename( String filename, HashMap<String, NativeFilePickerSAFEntry> existingFiles )
+	{
+		String name = filename, extension = "";
+		int extensionStart = filename.lastIndexOf( '.' );
+		if( extensionStart > 0 )
+		{
+			name = filename.substring( 0, extensionStart );
+			extension = filename.substring( extensionStart );
+		}
+
+		String result;
+		int suffix = 1;
+		while( existingFiles.containsKey( result = name + " (" + suffix + ")" + extension ) )
+			suffix++;
+
+		return result;
+	}
+
+	@Override
+	protected void sendResult( NativeFilePickerResultReceiver resultReceiver, boolean finished )
+	{
+		resultReceiver.OnFilesExported( finished && success );
+	}
+
+	@Override
+	protected void sendProgress( NativeFilePickerResultReceiver resultReceiver, NativeFilePickerProgressChannel progressChannel )
+	{
+		resultReceiver.OnExportProgressChanged( progressChannel.getProcessedBytes(), progressChannel.getTotalBytes(), progressChannel.getProcessedFiles(), progressChannel.getTotalFiles(), progressChannel.getBytesPerSecond(), progressChannel.getRemainingMillis() );
+	}
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+package com.yasirkula.unity;
+
+import android.os.ParcelFileDescriptor;
+import android.webkit.MimeTypeMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Locale;
+
+// Content of an exported document. In addition to files, generated content (e.g. screenshots or save data) can be exported directly from memory
+// or from a stream, without writing it to a temporary file first
+public abstract class NativeFilePickerExportSource
+{
+	public final String name; // Display name of the exported document
+	public final String mimeType;
+
+	private static class FileSource extends NativeFilePickerExportSource
+	{
+		private final File file;
+
+		public FileSource( File file )
+		{
+			super( file.getName(), null );
+			this.file = file;
+		}
+
+		@Override
+		public String getPath()
+		{
+			return file.getPath();
+		}
+
+		@Override
+		public boolean exists()
+		{
+			return file.exists();
+		}
+
+		@Override
+		public long length()
+		{
+			return file.length();
+		}
+
+		@Override
+		public long lastModified()
+		{
+			return file.lastModified();
+		}
+
+		@Override
+		public void writeTo( ParcelFileDescriptor destination, long offset, NativeFilePickerFileTransfer.Listener listener, MessageDigest digest ) throws IOException
+		{
+			NativeFilePickerFileTransfer.copy( file, destination, offset, listener, digest );
+		}
+	}
+
+	private static class ByteBufferSource extends NativeFilePickerExportSource
+	{
+		private final ByteBuffer buffer;
+
+		public ByteBufferSource( ByteBuffer buffer, String name, String mimeType )
+		{
+			super( name, mimeType );
+			this.buffer = buffer;
+		}
+
+		@Override
+		public long length()
+		{
+			return buffer.remaining();
+		}
+
+		@Override
+		public void writeTo( ParcelFileDescriptor destination, long offset, NativeFilePickerFileTransfer.Listener listener, MessageDigest digest ) throws IOException
+		{
+			// The buffer is duplicated so that its position isn't modified
+			NativeFilePickerFileTransfer.copy( buffer.duplicate(), destination, offset, listener, digest );
+		}
+	}
+
+	private static class StreamSource extends NativeFilePickerExportSource
+	{
+		private final InputStream stream;
+
+		public StreamSource( InputStream stream, String name, String mimeType )
+		{
+			super( name, mimeType );
+			this.stream = stream;
+		}
+
+		@Override
+		public long length()
+		{
+			return -1L;
+		}
+
+		@Override
+		public boolean canResume()
+		{
+			return false;
+		}
+
+		@Override
+		public void writeTo( ParcelFileDescriptor destination, long offset, NativeFilePickerFileTransfer.Listener listener, MessageDigest digest ) throws IOException
+		{
+			if( offset > 0L )
+				throw new IOException( "Streams can't be resumed" );
+
+			try
+			{
+				NativeFilePickerFileTransfer.copy( stream, destination, listener, digest );
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+	}
+
+	public static NativeFilePickerExportSource fromFile( String path )
+	{
+		return new FileSource( new File( path ) );
+	}
+
+	// The array isn't copied, so it mustn't be modified until the export operation completes
+	public static NativeFilePickerExportSource fromBytes( byte[] bytes, String name, String mimeType )
+	{
+		return new ByteBufferSource( ByteBuffer.wrap( bytes ), name, mimeType );
+	}
+
+	// Remaining bytes of the buffer are exported, direct buffers are written without copying them to the Java heap
+	public static NativeFilePickerExportSource fromByteBuffer( ByteBuffer buffer, String name, String mimeType )
+	{
+		return new ByteBufferSource( buffer, name, mimeType );
+	}
+
+	// The stream is closed after it's exported. It can be read only once, so it shouldn't be exported multiple times
+	public static NativeFilePickerExportSource fromStream( InputStream stream, String name, String mimeType )
+	{
+		return new StreamSource( stream, name, mimeType );
+	}
+
+	// MIME type is determined from the name's extension if it's null or empty
+	protected NativeFilePickerExportSource( String name, String mimeType )
+	{
+		this.name = name;
+		this.mimeType = ( mimeType != null && mimeType.length() > 0 ) ? mimeType : getMimeTypeFromFilename( name );
+	}
+
+	// Used in log messages
+	public String getPath()
+	{
+		return name;
+	}
+
+	public boolean exists()
+	{
+		return true;
+	}
+
+	// Returns -1 if it isn't known beforehand
+	public abstract long length();
+
+	// Returns 0 if it isn't known, such sources are never considered identical to the existing documents
+	public long lastModified()
+	{
+		return 0L;
+	}
+
+	// Returns false if the source can be read only once, such sources aren't exported again if the transfer fails
+	public boolean canResume()
+	{
+		return true;
+	}
+
+	// Writes the source to the destination, starting from the offset. The offset is greater than 0 only if a failed transfer is being resumed.
+	// If digest isn't null, it's updated with the written bytes (the skipped bytes were hashed while they were written in the previous attempts)
+	public abstract void writeTo( ParcelFileDescriptor destination, long offset, NativeFilePickerFileTransfer.Listener listener, MessageDigest digest ) throws IOException;
+
+	private static String getMimeTypeFromFilename( String filename )
+	{
+		int extensionStart = filename.lastIndexOf( '.' );
+		if( extensionStart < 0 || extensionStart == filename.length() - 1 )
+			return "application/octet-stream";
+
+		String mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension( filename.substring( extensionStart + 1 ).toLowerCase( Locale.ENGLISH ) );
+		return ( mimeType == null || mimeType.length() == 0 ) ? "application/octet-stream" : mimeType;
+	}
+}
\ No newline at end of file
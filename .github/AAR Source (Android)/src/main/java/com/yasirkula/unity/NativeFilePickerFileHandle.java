@@ -0,0 +1,266 @@
+package com.yasirkula.unity;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+// An open picked file that is read directly from its document provider, without copying it to the disk first. Unity accesses the
+// handles via their integer ids and must close them explicitly (FPFileStreamAndroid closes its handle when it's disposed or finalized)
+public class NativeFilePickerFileHandle
+{
+	private static final HashMap<Integer, NativeFilePickerFileHandle> handles = new HashMap<Integer, NativeFilePickerFileHandle>();
+	private static final byte[] EMPTY_BUFFER = new byte[0];
+	private static int nextHandleId = 1;
+
+	private final AssetFileDescriptor descriptor;
+	private final InputStream stream;
+	private final FileChannel channel; // Null if the provider handed out a pipe, such files can only be read sequentially
+	private final long startOffset, length; // Length is -1 if it's unknown
+	private long position;
+	private byte[] readBuffer; // Returned by Read and reused by the following Read calls with the same count since Unity copies the returned array
+
+	private NativeFilePickerFileHandle( AssetFileDescriptor descriptor ) throws Exception
+	{
+		this.descriptor = descriptor;
+
+		if( descriptor.getParcelFileDescriptor().getStatSize() >= 0L )
+		{
+			long length = descriptor.getDeclaredLength();
+			if( length == AssetFileDescriptor.UNKNOWN_LENGTH )
+				length = descriptor.getParcelFileDescriptor().getStatSize() - descriptor.getStartOffset();
+
+			this.stream = null;
+			this.channel = new FileInputStream( descriptor.getFileDescriptor() ).getChannel();
+			this.startOffset = descriptor.getStartOffset();
+			this.length = length;
+		}
+		else
+		{
+			this.stream = descriptor.createInputStream();
+			this.channel = null;
+			this.startOffset = 0L;
+			this.length = -1L;
+		}
+	}
+
+	// Opens the file on a separate thread since document providers may block until the file is downloaded (e.g. cloud documents), which
+	// would freeze the UI thread. Handle id is sent to the receiver on the main thread. If the receiver can't accept it, the handle is closed
+	public static void OpenAsync( Context context, final Uri uri, final NativeFilePickerResultReceiver resultReceiver )
+	{
+		final Context appContext = context.getApplicationContext();
+		final Handler mainHandler = new Handler( Looper.getMainLooper() );
+
+		new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final int handleId = Open( appContext, uri );
+				mainHandler.post( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						try
+						{
+							resultReceiver.OnFileStreamPicked( handleId );
+						}
+						catch( Exception e )
+						{
+							Log.e( "Unity", "Exception:", e );
+
+							if( handleId != 0 )
+								Close( handleId );
+						}
+					}
+				} );
+			}
+		} ).start();
+	}
+
+	// Returns 0 if the file couldn't be opened
+	public static int Open( Context context, Uri uri )
+	{
+		if( uri == null )
+			return 0;
+
+		try
+		{
+			AssetFileDescriptor descriptor = context.getContentResolver().openAssetFileDescriptor( uri, "r" );
+			if( descriptor == null )
+			{
+				Log.w( "Unity", "Couldn't open input stream: " + uri );
+				return 0;
+			}
+
+			NativeFilePickerFileHandle handle;
+			try
+			{
+				handle = new NativeFilePickerFileHandle( descriptor );
+			}
+			catch( Exception e )
+			{
+				descriptor.close();
+				throw e;
+			}
+
+			synchronized( handles )
+			{
+				int handleId = nextHandleId++;
+				handles.put( handleId, handle );
+
+				Log.d( "Unity", "Opened file handle " + handleId + " for: " + uri );
+				return handleId;
+			}
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return 0;
+		}
+	}
+
+	// Returns an empty array at the end of the file and null if an error occurs. The returned array may be reused by the next Read call,
+	// so a handle mustn't be read from multiple threads simultaneously
+	public static byte[] Read( int handleId, int count )
+	{
+		NativeFilePickerFileHandle handle = getHandle( handleId );
+		if( handle == null || count < 0 )
+			return null;
+
+		synchronized( handle )
+		{
+			try
+			{
+				if( handle.length >= 0L )
+					count = (int) Math.min( count, handle.length - handle.position );
+
+				if( count <= 0 )
+					return EMPTY_BUFFER;
+
+				byte[] buffer = handle.readBuffer;
+				if( buffer == null || buffer.length != count )
+					handle.readBuffer = buffer = new byte[count];
+
+				int readBytes = 0;
+				while( readBytes < buffer.length )
+				{
+					int len;
+					if( handle.channel != null )
+						len = handle.channel.read( ByteBuffer.wrap( buffer, readBytes, buffer.length - readBytes ), handle.startOffset + handle.position );
+					else
+						len = handle.stream.read( buffer, readBytes, buffer.length - readBytes );
+
+					if( len <= 0 )
+						break;
+
+					readBytes += len;
+					handle.position += len;
+				}
+
+				if( readBytes == buffer.length )
+					return buffer;
+
+				byte[] result = new byte[readBytes];
+				System.arraycopy( buffer, 0, result, 0, readBytes );
+				return result;
+			}
+			catch( Exception e )
+			{
+				Log.e( "Unity", "Exception:", e );
+				return null;
+			}
+		}
+	}
+
+	// Returns the new position or -1 if the provider doesn't support seeking (files streamed via a pipe can only be read sequentially)
+	public static long Seek( int handleId, long position )
+	{
+		NativeFilePickerFileHandle handle = getHandle( handleId );
+		if( handle == null || handle.channel == null || position < 0L )
+			return -1L;
+
+		synchronized( handle )
+		{
+			handle.position = Math.min( position, handle.length );
+			return handle.position;
+		}
+	}
+
+	public static boolean CanSeek( int handleId )
+	{
+		NativeFilePickerFileHandle handle = getHandle( handleId );
+		return handle != null && handle.channel != null;
+	}
+
+	public static long GetPosition( int handleId )
+	{
+		NativeFilePickerFileHandle handle = getHandle( handleId );
+		if( handle == null )
+			return -1L;
+
+		synchronized( handle )
+		{
+			return handle.position;
+		}
+	}
+
+	// Returns -1 if the length is unknown
+	public static long GetLength( int handleId )
+	{
+		NativeFilePickerFileHandle handle = getHandle( handleId );
+		return ( handle != null ) ? handle.length : -1L;
+	}
+
+	public static void Close( int handleId )
+	{
+		NativeFilePickerFileHandle handle;
+		synchronized( handles )
+		{
+			handle = handles.remove( handleId );
+		}
+
+		if( handle == null )
+			return;
+
+		synchronized( handle )
+		{
+			try
+			{
+				if( handle.channel != null )
+					handle.channel.close();
+				if( handle.stream != null )
+					handle.stream.close();
+
+				handle.descriptor.close();
+			}
+			catch( Exception e )
+			{
+				Log.e( "Unity", "Exception:", e );
+			}
+		}
+
+		Log.d( "Unity", "Closed file handle " + handleId );
+	}
+
+	private static NativeFilePickerFileHandle getHandle( int handleId )
+	{
+		synchronized( handles )
+		{
+			NativeFilePickerFileHandle handle = handles.get( handleId );
+			if( handle == null )
+				Log.w( "Unity", "Invalid file handle: " + handleId );
+
+			return handle;
+		}
+	}
+}
\ No newline at end of file
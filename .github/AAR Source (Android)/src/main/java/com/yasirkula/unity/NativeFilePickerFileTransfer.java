@@ -0,0 +1,362 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.res.AssetFileDescriptor;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Copies documents to local files and vice versa, shared by the operations that import and export files
+public class NativeFilePickerFileTransfer
+{
+	private static final long FILE_CHANNEL_TRANSFER_SIZE = 8L * 1024L * 1024L;
+	private static final String DIGEST_ALGORITHM = "SHA-256"; // Guaranteed to be available on all Android versions (CRC32C requires API 26)
+
+	public interface Listener
+	{
+		boolean isCancelled();
+		void onBytesTransferred( long bytes );
+	}
+
+	// Returns -1 if the provider hands out a pipe (i.e. the file is streamed or generated on the fly), such files can't be copied via FileChannel
+	public static long getLength( AssetFileDescriptor descriptor )
+	{
+		if( descriptor.getParcelFileDescriptor().getStatSize() < 0L )
+			return -1L;
+
+		long length = descriptor.getDeclaredLength();
+		if( length == AssetFileDescriptor.UNKNOWN_LENGTH )
+			length = descriptor.getParcelFileDescriptor().getStatSize() - descriptor.getStartOffset();
+
+		return length;
+	}
+
+	// Hard links the file behind the descriptor to the destination, so that it's imported instantly without using extra storage. Returns false
+	// if the source isn't a whole regular file, is on another filesystem (e.g. the source is on external storage and the destination is in the
+	// app's internal storage) or the app isn't allowed to link it (i.e. it neither owns the file nor has read/write access to it), the source must
+	// be copied in that case. The existing destination file is replaced. Since the destination may still be a link when false is returned, delete
+	// it before copying the source into it, otherwise the copy would truncate the linked file
+	@TargetApi( Build.VERSION_CODES.LOLLIPOP )
+	public static boolean link( AssetFileDescriptor source, File destination )
+	{
+		if( Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP )
+			return false;
+
+		try
+		{
+			long statSize = source.getParcelFileDescriptor().getStatSize();
+			if( statSize < 0L || source.getStartOffset() != 0L || getLength( source ) != statSize )
+				return false;
+
+			StructStat sourceStat = Os.fstat( source.getFileDescriptor() );
+			if( !OsConstants.S_ISREG( sourceStat.st_mode ) )
+				return false;
+
+			// The opened file's path is the target of its "/proc/self/fd" entry. Make sure that the path still refers to the same file since
+			// the file may have been moved or replaced after it was opened
+			String sourcePath = Os.readlink( "/proc/self/fd/" + source.getParcelFileDescriptor().getFd() );
+			if( sourcePath == null || !sourcePath.startsWith( "/" ) )
+				return false;
+
+			StructStat sourcePathStat = Os.stat( sourcePath );
+			if( sourcePathStat.st_dev != sourceStat.st_dev || sourcePathStat.st_ino != sourceStat.st_ino )
+				return false;
+
+			if( destination.exists() )
+			{
+				// Destination is already the source file itself
+				StructStat destinationStat = Os.stat( destination.getAbsolutePath() );
+				if( destinationStat.st_dev == sourceStat.st_dev && destinationStat.st_ino == sourceStat.st_ino )
+					return true;
+
+				if( sourceStat.st_dev != destinationStat.st_dev || !destination.delete() ) // Hard links can't replace existing files
+					return false;
+			}
+
+			Os.link( sourcePath, destination.getAbsolutePath() );
+			return true;
+		}
+		catch( Exception e )
+		{
+			// EXDEV (different filesystems) and EPERM (not allowed) errors are expected, the file is copied instead
+			return false;
+		}
+	}
+
+	// Size hint is used to pick a buffer size when the source must be read as a stream, it can be -1 if the size is unknown
+	public static void copy( AssetFileDescriptor source, FileOutputStream output, long sizeHint, Listener listener ) throws IOException
+	{
+		copy( source, output, sizeHint, listener, null );
+	}
+
+	// If digest isn't null, it's updated with the copied bytes. Since the bytes must pass through a Java buffer to be hashed, FileChannel isn't
+	// used in that case but the file is still read only once
+	public static void copy( AssetFileDescriptor source, FileOutputStream output, long sizeHint, Listener listener, MessageDigest digest ) throws IOException
+	{
+		long length = getLength( source );
+		if( length >= 0L && digest == null )
+		{
+			FileChannel input = new FileInputStream( source.getFileDescriptor() ).getChannel();
+			try
+			{
+				copyFileChannel( input, source.getStartOffset(), length, output.getChannel(), listener );
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		else
+		{
+			InputStream input = source.createInputStream();
+			try
+			{
+				copyStream( input, output, sizeHint, listener, digest );
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+	}
+
+	// Writes a local file to a document, starting from the offset (used while resuming a failed transfer). If the document provider hands out
+	// a pipe (e.g. the document is uploaded while it's being written) or the written bytes must be hashed, the file is streamed instead
+	public static void copy( File source, ParcelFileDescriptor destination, long offset, Listener listener, MessageDigest digest ) throws IOException
+	{
+		FileInputStream input = new FileInputStream( source );
+		try
+		{
+			if( destination.getStatSize() >= 0L && digest == null )
+			{
+				FileChannel inputChannel = input.getChannel();
+				FileChannel outputChannel = openOutputChannel( destination, offset );
+				try
+				{
+					copyFileChannel( inputChannel, offset, inputChannel.size() - offset, outputChannel, listener );
+				}
+				finally
+				{
+					outputChannel.close();
+				}
+			}
+			else
+			{
+				FileChannel outputChannel = openOutputChannel( destination, offset );
+				try
+				{
+					if( offset > 0L )
+						input.getChannel().position( offset );
+
+					copyStream( input, Channels.newOutputStream( outputChannel ), source.length(), listener, digest );
+				}
+				finally
+				{
+					outputChannel.close();
+				}
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	// Writes the remaining bytes of the buffer to a document, skipping the first offset bytes (used while resuming a failed transfer). Direct
+	// buffers are written without being copied to the Java heap
+	public static void copy( ByteBuffer source, ParcelFileDescriptor destination, long offset, Listener listener, MessageDigest digest ) throws IOException
+	{
+		// FileChannel can write to pipes, as well
+		FileChannel output = openOutputChannel( destination, offset );
+		try
+		{
+			source.position( source.position() + (int) offset );
+
+			int limit = source.limit();
+			while( source.position() < limit && !listener.isCancelled() )
+			{
+				// Write in chunks so that progress can be reported and cancellation can be detected
+				source.limit( (int) Math.min( limit, source.position() + FILE_CHANNEL_TRANSFER_SIZE ) );
+				int writtenBytes;
+				try
+				{
+					writtenBytes = output.write( source );
+				}
+				finally
+				{
+					source.limit( limit );
+				}
+
+				if( writtenBytes <= 0 )
+					throw new IOException( "Couldn't write to the document" );
+
+				if( digest != null )
+				{
+					ByteBuffer writtenBuffer = source.duplicate();
+					writtenBuffer.position( source.position() - writtenBytes );
+					writtenBuffer.limit( source.position() );
+					digest.update( writtenBuffer );
+				}
+
+				listener.onBytesTransferred( writtenBytes );
+			}
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+
+	// Writes the stream to a document. Streams can't be rewound, so the transfer can't be resumed. The stream isn't closed
+	public static void copy( InputStream source, ParcelFileDescriptor destination, Listener listener, MessageDigest digest ) throws IOException
+	{
+		FileOutputStream output = new FileOutputStream( destination.getFileDescriptor() );
+		try
+		{
+			copyStream( source, output, -1L, listener, digest );
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+
+	// Returns false for pipes and sockets (whose sizes are unknown) and for any other file descriptor that rejects seeking
+	public static boolean isSeekable( ParcelFileDescriptor descriptor )
+	{
+		if( descriptor.getStatSize() < 0L )
+			return false;
+
+		// Streams that are created from file descriptors don't close the descriptors
+		FileChannel channel = new FileInputStream( descriptor.getFileDescriptor() ).getChannel();
+		try
+		{
+			channel.position();
+			return true;
+		}
+		catch( IOException e )
+		{
+			return false;
+		}
+		finally
+		{
+			try
+			{
+				channel.close();
+			}
+			catch( IOException e )
+			{
+			}
+		}
+	}
+
+	// Streams that are created from file descriptors don't close the descriptors, the destination is closed by the caller. Pipes can't be seeked,
+	// so the offset must be 0 for them
+	private static FileChannel openOutputChannel( ParcelFileDescriptor destination, long offset ) throws IOException
+	{
+		if( offset > 0L && destination.getStatSize() < 0L )
+			throw new IOException( "Can't resume writing to a pipe" );
+
+		FileChannel output = new FileOutputStream( destination.getFileDescriptor() ).getChannel();
+		if( offset > 0L )
+			output.position( offset );
+
+		return output;
+	}
+
+	// Lets the kernel move the data between the two files (sendfile) instead of pumping it through a Java buffer
+	private static void copyFileChannel( FileChannel input, long startOffset, long length, FileChannel output, Listener listener ) throws IOException
+	{
+		long copiedBytes = 0L;
+		while( copiedBytes < length && !listener.isCancelled() )
+		{
+			// Transfer in chunks so that progress can be reported and cancellation can be detected
+			long transferredBytes = input.transferTo( startOffset + copiedBytes, Math.min( FILE_CHANNEL_TRANSFER_SIZE, length - copiedBytes ), output );
+			if( transferredBytes <= 0L ) // Source was truncated while it was being copied
+				throw new IOException( "Unexpected end of file" );
+
+			copiedBytes += transferredBytes;
+			listener.onBytesTransferred( transferredBytes );
+		}
+	}
+
+	public static MessageDigest createDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance( DIGEST_ALGORITHM );
+		}
+		catch( NoSuchAlgorithmException e )
+		{
+			throw new RuntimeException( e );
+		}
+	}
+
+	// Used for the files that weren't copied (e.g. they were directly accessible or found in the import cache)
+	public static String computeDigest( InputStream input, long sizeHint ) throws IOException
+	{
+		MessageDigest digest = createDigest();
+		byte[] buf = NativeFilePickerBufferPool.acquire( sizeHint );
+		try
+		{
+			int len;
+			while( ( len = input.read( buf ) ) > 0 )
+				digest.update( buf, 0, len );
+		}
+		finally
+		{
+			NativeFilePickerBufferPool.release( buf );
+			input.close();
+		}
+
+		return toHexString( digest.digest() );
+	}
+
+	public static String toHexString( byte[] digest )
+	{
+		StringBuilder result = new StringBuilder( digest.length * 2 );
+		for( byte b : digest )
+			result.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+
+		return result.toString();
+	}
+
+	// Size hint is used to pick a buffer size, it can be -1 if the size is unknown. If digest isn't null, it's updated with the written bytes
+	public static void copyStream( InputStream input, OutputStream output, long sizeHint, Listener listener, MessageDigest digest ) throws IOException
+	{
+		byte[] buf = NativeFilePickerBufferPool.acquire( sizeHint );
+		try
+		{
+			int len;
+			while( ( len = input.read( buf ) ) > 0 )
+			{
+				if( listener.isCancelled() )
+					break;
+
+				output.write( buf, 0, len );
+				if( digest != null )
+					digest.update( buf, 0, len );
+
+				listener.onBytesTransferred( len );
+			}
+		}
+		finally
+		{
+			NativeFilePickerBufferPool.release( buf );
+		}
+	}
+}
\ No newline at end of file
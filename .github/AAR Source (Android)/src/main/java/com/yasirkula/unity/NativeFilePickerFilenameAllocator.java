@@ -0,0 +1,42 @@
+package com.yasirkula.unity;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// Assigns unique filenames to the files that are copied to a directory during a pick operation. Clashing filenames get a number appended to them
+// (e.g. image.jpg, image2.jpg, image3.jpg). The next number to try is remembered for each filename, so each name is allocated in constant time
+public class NativeFilePickerFilenameAllocator
+{
+	private final HashSet<String> usedFilenames = new HashSet<String>();
+	private final HashSet<String> protectedFilenames; // Existing files in the directory that mustn't be overwritten
+	private final HashMap<String, Integer> nextFilenameSuffixes = new HashMap<String, Integer>();
+
+	public NativeFilePickerFilenameAllocator( Collection<String> protectedFilenames )
+	{
+		this.protectedFilenames = new HashSet<String>( protectedFilenames );
+	}
+
+	public synchronized String allocate( String filename, String extension )
+	{
+		String fullName = filename + extension;
+		if( !protectedFilenames.contains( fullName ) && usedFilenames.add( fullName ) )
+			return fullName;
+
+		Integer nextSuffix = nextFilenameSuffixes.get( fullName );
+		int suffix = ( nextSuffix != null ) ? nextSuffix : 2;
+		String result;
+		while( protectedFilenames.contains( result = filename + suffix + extension ) || !usedFilenames.add( result ) )
+			suffix++;
+
+		nextFilenameSuffixes.put( fullName, suffix + 1 );
+		return result;
+	}
+
+	// Marks an existing file as used by this pick operation (e.g. a previously copied file that is returned from NativeFilePickerImportCache). Returns false
+	// if the filename was already allocated for another picked file, in which case the existing file will be overwritten
+	public synchronized boolean reserveExisting( String fullName )
+	{
+		return usedFilenames.add( fullName );
+	}
+}
\ No newline at end of file
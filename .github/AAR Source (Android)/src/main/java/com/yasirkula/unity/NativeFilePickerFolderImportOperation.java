@@ -0,0 +1,345 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Imports a picked folder (document tree) into a local directory while preserving its structure. The tree is traversed breadth-first on a
+// bounded thread pool: directories are listed simultaneously and each discovered file is queued for copying right away. The task queue is
+// bounded as well; when it's full, the thread that discovered the file or directory imports it itself, so the traversal can't get ahead of
+// the copies and only a limited part of the tree is held in memory. Files and directories that can't be imported are skipped
+@TargetApi( Build.VERSION_CODES.LOLLIPOP )
+public class NativeFilePickerFolderImportOperation extends NativeFilePickerOperation
+{
+	private static final long CANCEL_CLEANUP_TIMEOUT = 5000L;
+	private static final int QUEUED_TASKS_PER_THREAD = 16;
+
+	private class FileCopyProgress implements NativeFilePickerFileTransfer.Listener
+	{
+		public long copiedBytes;
+
+		@Override
+		public boolean isCancelled()
+		{
+			return progressChannel.isCancelled();
+		}
+
+		@Override
+		public void onBytesTransferred( long bytes )
+		{
+			copiedBytes += bytes;
+			progressChannel.addProcessedBytes( bytes );
+		}
+	}
+
+	private final Context context;
+	private final Uri treeUri;
+	private final String savePath;
+
+	private ThreadPoolExecutor executor;
+	private final AtomicInteger pendingTaskCount = new AtomicInteger();
+	private final AtomicInteger failedFileCount = new AtomicInteger();
+
+	private String unityResult = "";
+
+	public NativeFilePickerFolderImportOperation( final Context context, final NativeFilePickerResultReceiver resultReceiver, final Uri treeUri, final String savePath )
+	{
+		super( resultReceiver );
+
+		this.context = context;
+		this.treeUri = treeUri;
+		this.savePath = savePath;
+	}
+
+	@Override
+	public void execute()
+	{
+		try
+		{
+			NativeFilePickerSAFEntry root = NativeFilePickerSAFEntry.fromTreeUri( context, treeUri );
+			if( root == null )
+			{
+				Log.e( "Unity", "Couldn't access picked folder: " + treeUri );
+				return;
+			}
+
+			// The previously imported folder is deleted so that the app's cache doesn't keep growing with each import
+			File saveDirectory = new File( savePath );
+			deleteRecursively( saveDirectory );
+
+			String rootName = getSafeFilename( root.getName() );
+			final File destination = new File( saveDirectory, ( rootName != null ) ? rootName : "Folder" );
+			if( !destination.mkdirs() )
+			{
+				Log.e( "Unity", "Couldn't create directory: " + destination );
+				return;
+			}
+
+			progressChannel.startTransfer( 0L, 0 ); // Totals grow while the folder is traversed
+
+			int threadCount = Math.max( 1, NativeFilePickerPickFragment.maxConcurrentImports );
+			executor = new ThreadPoolExecutor( threadCount, threadCount, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>( threadCount * QUEUED_TASKS_PER_THREAD ) );
+			try
+			{
+				importDirectory( root, destination );
+
+				synchronized( pendingTaskCount )
+				{
+					while( pendingTaskCount.get() > 0 && !progressChannel.isCancelled() )
+						pendingTaskCount.wait( 1000L );
+				}
+			}
+			finally
+			{
+				executor.shutdownNow();
+			}
+
+			if( progressChannel.isCancelled() )
+			{
+				// Wait for the running copies to notice the cancellation before deleting the partially imported folder
+				executor.awaitTermination( CANCEL_CLEANUP_TIMEOUT, TimeUnit.MILLISECONDS );
+				deleteRecursively( destination );
+			}
+			else
+			{
+				if( failedFileCount.get() > 0 )
+					Log.w( "Unity", failedFileCount.get() + " file(s) or folder(s) couldn't be imported from: " + treeUri );
+
+				Log.d( "Unity", "Imported folder " + treeUri + " to: " + destination.getAbsolutePath() );
+				unityResult = destination.getAbsolutePath();
+			}
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+		}
+		finally
+		{
+			progressChannel.finish();
+		}
+	}
+
+	private void submit( final Runnable task )
+	{
+		pendingTaskCount.incrementAndGet();
+
+		Runnable wrappedTask = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					if( !progressChannel.isCancelled() )
+						task.run();
+				}
+				catch( Exception e )
+				{
+					Log.e( "Unity", "Exception:", e );
+				}
+				finally
+				{
+					onTaskCompleted();
+				}
+			}
+		};
+
+		try
+		{
+			executor.execute( wrappedTask );
+		}
+		catch( RejectedExecutionException e )
+		{
+			if( executor.isShutdown() ) // Executor was shut down because the operation was cancelled
+				onTaskCompleted();
+			else // Task queue is full, run the task on this thread to slow down the traversal
+				wrappedTask.run();
+		}
+	}
+
+	private void onTaskCompleted()
+	{
+		if( pendingTaskCount.decrementAndGet() == 0 )
+		{
+			synchronized( pendingTaskCount )
+			{
+				pendingTaskCount.notifyAll();
+			}
+		}
+	}
+
+	private void importDirectory( NativeFilePickerSAFEntry directory, File destination )
+	{
+		if( !destination.isDirectory() && !destination.mkdirs() )
+		{
+			Log.e( "Unity", "Couldn't create directory: " + destination );
+			failedFileCount.incrementAndGet();
+			return;
+		}
+
+		// Children are listed with their metadata in a single query, so their getters don't query the document provider again
+		ArrayList<NativeFilePickerSAFEntry> children = directory.listFiles();
+		if( children == null )
+		{
+			Log.w( "Unity", "Couldn't list the contents of folder: " + directory.getUri() );
+			failedFileCount.incrementAndGet();
+			return;
+		}
+
+		// Some document providers allow multiple documents with the same name in a folder
+		NativeFilePickerFilenameAllocator filenameAllocator = new NativeFilePickerFilenameAllocator( Collections.<String>emptyList() );
+
+		for( int i = 0; i < children.size() && !progressChannel.isCancelled(); i++ )
+		{
+			final NativeFilePickerSAFEntry child = children.get( i );
+			String name = getSafeFilename( child.getName() );
+			if( name == null )
+			{
+				Log.w( "Unity", "Skipped document with invalid name: " + child.getUri() );
+				continue;
+			}
+
+			if( child.isDirectory() )
+			{
+				final File childDestination = new File( destination, filenameAllocator.allocate( name, "" ) );
+				submit( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						importDirectory( child, childDestination );
+					}
+				} );
+			}
+			else if( child.isFile() )
+			{
+				int extensionIndex = name.lastIndexOf( '.' );
+				if( extensionIndex > 0 )
+					name = filenameAllocator.allocate( name.substring( 0, extensionIndex ), name.substring( extensionIndex ) );
+				else
+					name = filenameAllocator.allocate( name, "" );
+
+				final File childDestination = new File( destination, name );
+
+				progressChannel.addTotalFiles( 1 );
+				progressChannel.addTotalBytes( child.length() );
+
+				submit( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						importFile( child, childDestination );
+					}
+				} );
+			}
+		}
+	}
+
+	private void importFile( NativeFilePickerSAFEntry file, File destination )
+	{
+		long expectedBytes = file.length();
+		FileCopyProgress copyProgress = new FileCopyProgress();
+		AssetFileDescriptor source = null;
+		FileOutputStream output = null;
+		boolean success = false;
+		try
+		{
+			source = context.getContentResolver().openAssetFileDescriptor( file.getUri(), "r" );
+			if( source == null )
+				Log.w( "Unity", "Couldn't open input stream: " + file.getUri() );
+			else if( NativeFilePicker.LinkPickedFiles && NativeFilePickerFileTransfer.link( source, destination ) )
+				success = !progressChannel.isCancelled(); // Linked file shares the original file's last modified date
+			else
+			{
+				destination.delete(); // Don't truncate the original file if the destination is a hard link to it
+				output = new FileOutputStream( destination, false );
+				NativeFilePickerFileTransfer.copy( source, output, expectedBytes, copyProgress );
+
+				output.close();
+				output = null;
+
+				success = !progressChannel.isCancelled();
+				if( success && file.lastModified() > 0L )
+					destination.setLastModified( file.lastModified() );
+			}
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+		}
+		finally
+		{
+			try
+			{
+				if( output != null )
+					output.close();
+				if( source != null )
+					source.close();
+			}
+			catch( Exception e )
+			{
+			}
+
+			if( !success )
+			{
+				destination.delete();
+
+				if( !progressChannel.isCancelled() )
+					failedFileCount.incrementAndGet();
+			}
+
+			// Correct the total size once the file's actual size is known (the reported size may be missing or outdated)
+			if( copyProgress.copiedBytes != expectedBytes )
+				progressChannel.addTotalBytes( copyProgress.copiedBytes - expectedBytes );
+
+			progressChannel.addProcessedFiles( 1 );
+		}
+	}
+
+	// Returns null if the name can't be used as a filename
+	private static String getSafeFilename( String name )
+	{
+		if( name == null || name.length() == 0 || name.equals( "." ) || name.equals( ".." ) )
+			return null;
+
+		return name.replace( '/', '_' ).replace( '\0', '_' );
+	}
+
+	private static void deleteRecursively( File file )
+	{
+		File[] children = file.listFiles();
+		if( children != null )
+		{
+			for( File child : children )
+				deleteRecursively( child );
+		}
+
+		file.delete();
+	}
+
+	@Override
+	protected void sendResult( NativeFilePickerResultReceiver resultReceiver, boolean finished )
+	{
+		resultReceiver.OnFolderPicked( finished ? unityResult : "" );
+	}
+
+	@Override
+	protected void sendProgress( NativeFilePickerResultReceiver resultReceiver, NativeFilePickerProgressChannel progressChannel )
+	{
+		resultReceiver.OnImportProgressChanged( progressChannel.getProcessedBytes(), progressChannel.getTotalBytes(), progressChannel.getProcessedFiles(), progressChannel.getTotalFiles(), progressChannel.getBytesPerSecond(), progressChannel.getRemainingMillis() );
+	}
+}
\ No newline at end of file
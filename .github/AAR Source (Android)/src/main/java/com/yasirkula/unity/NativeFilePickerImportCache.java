@@ -0,0 +1,207 @@
+package com.yasirkula.unity;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+// Remembers where the picked files were copied to, so that picking the same file again (same URI, size and last modified date) returns
+// the existing copy instead of copying the file again. When the total size of the remembered copies exceeds the size limit, least recently
+// used copies are deleted. The cache is persisted in SharedPreferences so that it survives app restarts
+public class NativeFilePickerImportCache
+{
+	private static final String PREFS_NAME = "NativeFilePickerImportCache";
+	private static final String PREFS_ENTRIES_KEY = "Entries";
+
+	private static class Entry
+	{
+		public String key, path;
+		public long size, copyLastModified;
+	}
+
+	private static NativeFilePickerImportCache instance;
+
+	private final SharedPreferences preferences;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true ); // Iteration order: least recently used first
+	private long totalSize;
+	private boolean isDirty; // LRU order or entries were changed without being persisted
+
+	public static synchronized NativeFilePickerImportCache getInstance( Context context )
+	{
+		if( instance == null )
+			instance = new NativeFilePickerImportCache( context.getApplicationContext() );
+
+		return instance;
+	}
+
+	private NativeFilePickerImportCache( Context context )
+	{
+		preferences = context.getSharedPreferences( PREFS_NAME, Context.MODE_PRIVATE );
+
+		try
+		{
+			JSONArray entriesJson = new JSONArray( preferences.getString( PREFS_ENTRIES_KEY, "[]" ) );
+			for( int i = 0; i < entriesJson.length(); i++ )
+			{
+				JSONObject entryJson = entriesJson.getJSONObject( i );
+
+				Entry entry = new Entry();
+				entry.key = entryJson.getString( "key" );
+				entry.path = entryJson.getString( "path" );
+				entry.size = entryJson.getLong( "size" );
+				entry.copyLastModified = entryJson.getLong( "copyLastModified" );
+
+				entries.put( entry.key, entry );
+				totalSize += entry.size;
+			}
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Couldn't load NativeFilePickerImportCache, resetting it:", e );
+
+			entries.clear();
+			totalSize = 0L;
+		}
+	}
+
+	// Returns the path of the previously copied file or null if the file wasn't copied before or the copy was modified/deleted since then
+	public synchronized String get( Uri uri, long size, long lastModified, String directory )
+	{
+		String key = getKey( uri, size, lastModified );
+		Entry entry = entries.get( key );
+		if( entry == null )
+			return null;
+
+		if( !isCopyIntact( entry ) )
+		{
+			removeEntry( key );
+			isDirty = true;
+
+			return null;
+		}
+
+		File copy = new File( entry.path );
+		if( !directory.equals( copy.getParent() ) )
+			return null;
+
+		isDirty = true;
+		return entry.path;
+	}
+
+	// Changes are persisted once after the pick operation instead of after each cache hit or copy, so that the parallel imports don't queue
+	// on the cache to serialize it
+	public synchronized void saveIfDirty()
+	{
+		if( isDirty )
+			save();
+	}
+
+	// Returns the names of the intact copies inside the directory
+	public synchronized ArrayList<String> getCachedFilenames( String directory )
+	{
+		ArrayList<String> result = new ArrayList<String>();
+		for( Entry entry : entries.values() )
+		{
+			File copy = new File( entry.path );
+			if( directory.equals( copy.getParent() ) && isCopyIntact( entry ) )
+				result.add( copy.getName() );
+		}
+
+		return result;
+	}
+
+	public synchronized void put( Uri uri, long size, long lastModified, File copy, long maxSize )
+	{
+		if( size > maxSize )
+			return;
+
+		Entry entry = new Entry();
+		entry.key = getKey( uri, size, lastModified );
+		entry.path = copy.getAbsolutePath();
+		entry.size = size;
+		entry.copyLastModified = copy.lastModified();
+
+		// The copy may have overwritten a previously cached file (e.g. when NativeFilePickerPickFragment.tryPreserveFilenames is disabled)
+		Iterator<Entry> iterator = entries.values().iterator();
+		while( iterator.hasNext() )
+		{
+			Entry existingEntry = iterator.next();
+			if( existingEntry.key.equals( entry.key ) || existingEntry.path.equals( entry.path ) )
+			{
+				totalSize -= existingEntry.size;
+				iterator.remove();
+			}
+		}
+
+		entries.put( entry.key, entry );
+		totalSize += size;
+
+		iterator = entries.values().iterator();
+		while( totalSize > maxSize && iterator.hasNext() )
+		{
+			Entry lruEntry = iterator.next();
+			if( lruEntry == entry )
+				continue;
+
+			// Don't delete the file if it's no longer our copy
+			if( isCopyIntact( lruEntry ) )
+				new File( lruEntry.path ).delete();
+
+			totalSize -= lruEntry.size;
+			iterator.remove();
+		}
+
+		isDirty = true;
+	}
+
+	private void removeEntry( String key )
+	{
+		Entry entry = entries.remove( key );
+		if( entry != null )
+			totalSize -= entry.size;
+	}
+
+	private boolean isCopyIntact( Entry entry )
+	{
+		File copy = new File( entry.path );
+		return copy.length() == entry.size && copy.lastModified() == entry.copyLastModified;
+	}
+
+	private String getKey( Uri uri, long size, long lastModified )
+	{
+		return size + "|" + lastModified + "|" + uri.toString();
+	}
+
+	private void save()
+	{
+		try
+		{
+			JSONArray entriesJson = new JSONArray();
+			for( Entry entry : entries.values() )
+			{
+				JSONObject entryJson = new JSONObject();
+				entryJson.put( "key", entry.key );
+				entryJson.put( "path", entry.path );
+				entryJson.put( "size", entry.size );
+				entryJson.put( "copyLastModified", entry.copyLastModified );
+
+				entriesJson.put( entryJson );
+			}
+
+			preferences.edit().putString( PREFS_ENTRIES_KEY, entriesJson.toString() ).apply();
+			isDirty = false;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+		}
+	}
+}
\ No newline at end of file
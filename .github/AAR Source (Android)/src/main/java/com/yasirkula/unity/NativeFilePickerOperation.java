@@ -0,0 +1,99 @@
+package com.yasirkula.unity;
+
+import android.util.Log;
+
+// A background operation whose progress and result are sent to Unity on the main thread. Its progress can also be displayed by
+// NativeFilePickerPickResultFragment
+public abstract class NativeFilePickerOperation
+{
+	protected final NativeFilePickerResultReceiver resultReceiver;
+	protected final NativeFilePickerProgressChannel progressChannel = new NativeFilePickerProgressChannel( NativeFilePickerPickResultFragment.uiUpdateInterval );
+
+	private boolean sentResult;
+	private long lastSentProcessedBytes = -1L, lastSentTotalBytes = -1L, lastSentBytesPerSecond = -1L;
+	private int lastSentProcessedFiles = -1, lastSentTotalFiles = -1;
+
+	protected NativeFilePickerOperation( NativeFilePickerResultReceiver resultReceiver )
+	{
+		this.resultReceiver = resultReceiver;
+
+		progressChannel.addListener( new NativeFilePickerProgressChannel.Listener()
+		{
+			@Override
+			public void onProgressChanged( NativeFilePickerProgressChannel channel )
+			{
+				sendProgressToUnity();
+			}
+
+			@Override
+			public void onCompleted( NativeFilePickerProgressChannel channel )
+			{
+				sendResultToUnity();
+			}
+		} );
+	}
+
+	public NativeFilePickerProgressChannel getProgressChannel()
+	{
+		return progressChannel;
+	}
+
+	// Must complete the progress channel when it returns
+	public abstract void execute();
+
+	// The result is sent to Unity on the main thread when the operation completes
+	public void executeInBackground()
+	{
+		new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				execute();
+			}
+		} ).start();
+	}
+
+	public void cancel()
+	{
+		if( progressChannel.cancel() )
+			Log.d( "Unity", "Cancelled " + getClass().getSimpleName() + "!" );
+	}
+
+	public void sendResultToUnity()
+	{
+		if( sentResult )
+			return;
+
+		sentResult = true;
+
+		if( resultReceiver == null )
+			Log.d( "Unity", getClass().getSimpleName() + ".resultReceiver became null in sendResultToUnity!" );
+		else
+			sendResult( resultReceiver, progressChannel.getState() == NativeFilePickerProgressChannel.STATE_FINISHED ); // Result is only valid if the operation has finished
+	}
+
+	// Sends the progress only if it has changed since the last time. The transfer speed is compared, too, so that a stalled document provider
+	// (whose speed decays towards 0) can be told apart from a slow one
+	private void sendProgressToUnity()
+	{
+		if( sentResult || resultReceiver == null )
+			return;
+
+		long processedBytes = progressChannel.getProcessedBytes(), totalBytes = progressChannel.getTotalBytes(), bytesPerSecond = progressChannel.getBytesPerSecond();
+		int processedFiles = progressChannel.getProcessedFiles(), totalFiles = progressChannel.getTotalFiles();
+		if( processedBytes == lastSentProcessedBytes && totalBytes == lastSentTotalBytes && bytesPerSecond == lastSentBytesPerSecond && processedFiles == lastSentProcessedFiles && totalFiles == lastSentTotalFiles )
+			return;
+
+		lastSentProcessedBytes = processedBytes;
+		lastSentTotalBytes = totalBytes;
+		lastSentBytesPerSecond = bytesPerSecond;
+		lastSentProcessedFiles = processedFiles;
+		lastSentTotalFiles = totalFiles;
+
+		sendProgress( resultReceiver, progressChannel );
+	}
+
+	protected abstract void sendResult( NativeFilePickerResultReceiver resultReceiver, boolean finished );
+	protected abstract void sendProgress( NativeFilePickerResultReceiver resultReceiver, NativeFilePickerProgressChannel progressChannel );
+}
\ No newline at end of file
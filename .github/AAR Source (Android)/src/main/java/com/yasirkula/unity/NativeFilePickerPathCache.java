@@ -0,0 +1,96 @@
+package com.yasirkula.unity;
+
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Remembers the file paths that the picked URIs were resolved to if those files were accessible via File API, so that picking the same URIs
+// again doesn't query their content providers or open the files. Inaccessible files aren't cached since they can't be stat'ed to detect their
+// changes. An entry is discarded when its file's last modified date or size changes, and all entries are discarded when a storage volume is
+// mounted or unmounted since the paths may no longer be valid
+public class NativeFilePickerPathCache
+{
+	private static final int MAX_ENTRIES = 256;
+
+	public static class Entry
+	{
+		public final String path;
+		public final String displayName, mimeType; // Metadata that was returned by the content provider while resolving the path, null if unknown
+		private final long lastModified, size;
+
+		private Entry( String path, String displayName, String mimeType )
+		{
+			File file = new File( path );
+
+			this.path = path;
+			this.displayName = displayName;
+			this.mimeType = mimeType;
+			lastModified = file.lastModified();
+			size = file.length();
+		}
+
+		private boolean isValid()
+		{
+			File file = new File( path );
+			return file.lastModified() == lastModified && file.length() == size;
+		}
+	}
+
+	private static final LinkedHashMap<Uri, Entry> entries = new LinkedHashMap<Uri, Entry>( 16, 0.75f, true ) // Iteration order: least recently used first
+	{
+		@Override
+		protected boolean removeEldestEntry( Map.Entry<Uri, NativeFilePickerPathCache.Entry> eldest )
+		{
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	// Returns null if the URI isn't cached or its file was modified since then
+	public static Entry get( Uri uri )
+	{
+		Entry entry;
+		synchronized( entries )
+		{
+			entry = entries.get( uri );
+		}
+
+		// File is stat'ed outside the lock since it can be slow on some storage volumes
+		if( entry != null && !entry.isValid() )
+		{
+			synchronized( entries )
+			{
+				if( entries.get( uri ) == entry )
+					entries.remove( uri );
+			}
+
+			return null;
+		}
+
+		return entry;
+	}
+
+	// The file at the path must be accessible via File API
+	public static void put( Context context, Uri uri, String path, NativeFilePickerUriInfo uriInfo )
+	{
+		// Paths can't be invalidated when storage volumes change without the receiver, so they aren't cached in that case
+		if( !NativeFilePickerStorageVolumes.registerVolumeChangeReceiver( context ) )
+			return;
+
+		Entry entry = new Entry( path, uriInfo.displayName, uriInfo.mimeType );
+		synchronized( entries )
+		{
+			entries.put( uri, entry );
+		}
+	}
+
+	public static void clear()
+	{
+		synchronized( entries )
+		{
+			entries.clear();
+		}
+	}
+}
\ No newline at end of file
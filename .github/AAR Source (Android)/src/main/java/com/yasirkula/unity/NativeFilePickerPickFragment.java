@@ -32,6 +32,7 @@ ACTION_CREATE_DOCUMENT
 
 ACTION_OPEN_DOCUMENT_TREE
 + Export multiple files on API >= 21
++ Pick folder on API >= 21
 
  */
 
@@ -43,6 +44,8 @@ public class NativeFilePickerPickFragment extends Fragment
 	public static final String SAVE_PATH_ID = "NFPP_SAVE_PATH";
 	public static final String MIMES_ID = "NFPP_MIME";
 	public static final String TITLE_ID = "NFPP_TITLE";
+	public static final String OPEN_STREAM_ID = "NFPP_STREAM";
+	public static final String PICK_FOLDER_ID = "NFPP_FOLDER";
 
 	private static final int PICKER_MODE_DEFAULT = 0;
 	private static final int PICKER_MODE_GET_CONTENT = 1;
@@ -52,11 +55,13 @@ public class NativeFilePickerPickFragment extends Fragment
 
 	public static boolean tryPreserveFilenames = true; // When enabled, app's cache will fill more quickly since most of the picked files will have a unique filename (less chance of overwriting old files)
 	public static boolean showProgressbar = true; // When enabled, a progressbar will be displayed while selected file(s) are copied (if necessary) to the destination directory
+	public static int maxConcurrentImports = 4; // Number of files that are copied simultaneously while picking multiple files (speeds up imports from cloud-backed document providers)
+	public static long importCacheMaxSize = 0L; // When greater than 0, picking a previously picked file again will return its existing copy (if it's unchanged) instead of copying it again. Least recently picked copies are deleted when their total size exceeds this value (in bytes)
 	public static boolean forceFocusUnityActivityOnComplete = false; // When enabled, the Unity activity will forcefully be focused after a file is picked. Added for VR compatibility: https://github.com/yasirkula/UnityNativeFilePicker/issues/59#issuecomment-4815746727
 
 	private final NativeFilePickerResultReceiver resultReceiver;
-	private boolean selectMultiple;
-	private String savePathDirectory, savePathFilename;
+	private boolean selectMultiple, openStream, pickFolder;
+	private String savePath, savePathDirectory, savePathFilename;
 
 	public NativeFilePickerPickFragment()
 	{
@@ -83,14 +88,23 @@ public class NativeFilePickerPickFragment extends Fragment
 			ArrayList<String> mimes = getArguments().getStringArrayList( MIMES_ID );
 			String title = getArguments().getString( TITLE_ID );
 			selectMultiple = getArguments().getBoolean( SELECT_MULTIPLE_ID );
-			String savePath = getArguments().getString( SAVE_PATH_ID );
+			openStream = getArguments().getBoolean( OPEN_STREAM_ID );
+			pickFolder = getArguments().getBoolean( PICK_FOLDER_ID );
 
-			int pathSeparator = savePath.lastIndexOf( '/' );
-			savePathFilename = pathSeparator >= 0 ? savePath.substring( pathSeparator + 1 ) : savePath;
-			savePathDirectory = pathSeparator > 0 ? savePath.substring( 0, pathSeparator ) : getActivity().getCacheDir().getAbsolutePath();
+			if( !openStream ) // Streamed files aren't copied anywhere
+				savePath = getArguments().getString( SAVE_PATH_ID );
+
+			if( !openStream && !pickFolder ) // Picked folders are imported into the save path itself
+			{
+				int pathSeparator = savePath.lastIndexOf( '/' );
+				savePathFilename = pathSeparator >= 0 ? savePath.substring( pathSeparator + 1 ) : savePath;
+				savePathDirectory = pathSeparator > 0 ? savePath.substring( 0, pathSeparator ) : getActivity().getCacheDir().getAbsolutePath();
+			}
 
 			Intent intent;
-			if( mimes.size() <= 1 )
+			if( pickFolder )
+				intent = new Intent( Intent.ACTION_OPEN_DOCUMENT_TREE );
+			else if( mimes.size() <= 1 )
 			{
 				if( pickerMode != PICKER_MODE_OPEN_DOCUMENT || Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT )
 					intent = new Intent( Intent.ACTION_GET_CONTENT );
@@ -114,8 +128,12 @@ public class NativeFilePickerPickFragment extends Fragment
 				}
 			}
 
-			intent.setType( getCombinedMimeType( mimes ) );
-			intent.addCategory( Intent.CATEGORY_OPENABLE );
+			if( !pickFolder ) // ACTION_OPEN_DOCUMENT_TREE doesn't accept MIME types or categories
+			{
+				intent.setType( getCombinedMimeType( mimes ) );
+				intent.addCategory( Intent.CATEGORY_OPENABLE );
+			}
+
 			intent.addFlags( Intent.FLAG_GRANT_READ_URI_PERMISSION );
 
 			if( selectMultiple && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 )
@@ -127,7 +145,8 @@ public class NativeFilePickerPickFragment extends Fragment
 			try
 			{
 				//  MIUI devices have issues with Intent.createChooser on at least Android 11 (#15 and https://stackoverflow.com/questions/67785661/taking-and-picking-photos-on-poco-x3-with-android-11-does-not-work)
-				if( NativeFilePicker.UseDefaultFilePickerApp || ( Build.VERSION.SDK_INT == 30 && NativeFilePickerUtils.IsXiaomiOrMIUI() ) )
+				// If it's known that no apps can handle the intent, it's started directly so that the user is notified instead of seeing an empty chooser
+				if( NativeFilePicker.UseDefaultFilePickerApp || ( Build.VERSION.SDK_INT == 30 && NativeFilePickerUtils.IsXiaomiOrMIUI() ) || !NativeFilePickerDeviceCapabilities.hasPickerApp( intent.getAction() ) )
 					startActivityForResult( intent, PICK_FILE_CODE );
 				else
 					startActivityForResult( Intent.createChooser( intent, title ), PICK_FILE_CODE );
@@ -196,21 +215,29 @@ public class NativeFilePickerPickFragment extends Fragment
 			Log.d( "Unity", "NativeFilePickerPickFragment.resultReceiver became null in onActivityResult!" );
 		else if( resultCode != Activity.RESULT_OK || data == null )
 		{
-			if( !selectMultiple )
+			if( openStream )
+				resultReceiver.OnFileStreamPicked( 0 );
+			else if( pickFolder )
+				resultReceiver.OnFolderPicked( "" );
+			else if( !selectMultiple )
 				resultReceiver.OnFilePicked( "" );
 			else
 				resultReceiver.OnMultipleFilesPicked( "" );
 		}
+		else if( openStream )
+			NativeFilePickerFileHandle.OpenAsync( getActivity(), data.getData(), resultReceiver );
 		else
 		{
-			NativeFilePickerPickResultOperation resultOperation = new NativeFilePickerPickResultOperation( getActivity(), resultReceiver, data, selectMultiple, savePathDirectory, savePathFilename );
+			NativeFilePickerOperation resultOperation;
+			if( pickFolder )
+				resultOperation = new NativeFilePickerFolderImportOperation( getActivity(), resultReceiver, data.getData(), savePath );
+			else
+				resultOperation = new NativeFilePickerPickResultOperation( getActivity(), resultReceiver, data, selectMultiple, savePathDirectory, savePathFilename );
+
 			if( showProgressbar )
 				resultFragment = new NativeFilePickerPickResultFragment( resultOperation );
 			else
-			{
-				resultOperation.execute();
-				resultOperation.sendResultToUnity();
-			}
+				resultOperation.executeInBackground();
 		}
 
 		if( resultFragment == null )
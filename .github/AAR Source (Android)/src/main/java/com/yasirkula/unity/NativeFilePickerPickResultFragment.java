@@ -6,56 +6,53 @@ import android.app.DialogFragment;
 import android.content.DialogInterface;
 import android.graphics.Color;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
+import android.text.format.DateUtils;
+import android.text.format.Formatter;
+import android.util.Log;
 import android.view.Gravity;
 import android.widget.LinearLayout;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-// Handler usage reference: https://stackoverflow.com/a/6242292/2373034
 public class NativeFilePickerPickResultFragment extends DialogFragment
 {
 	public static int uiUpdateInterval = 100;
 	public static String progressBarLabel = "Please wait...";
+	public static boolean showTransferDetails = true;
 
-	private final NativeFilePickerPickResultOperation resultOperation;
+	private final NativeFilePickerOperation resultOperation;
 
 	private ProgressBar progressBar;
+	private TextView transferDetailsText;
 
-	private final Handler uiUpdateHandler = new Handler( Looper.getMainLooper() );
-	private final Runnable progressBarUpdateTask = new Runnable()
+	private final NativeFilePickerProgressChannel.Listener progressListener = new NativeFilePickerProgressChannel.Listener()
 	{
 		@Override
-		public void run()
+		public void onProgressChanged( NativeFilePickerProgressChannel channel )
 		{
-			if( resultOperation.finished )
+			if( progressBar != null )
 			{
-				resultOperation.sendResultToUnity();
-				dismissAllowingStateLoss();
-			}
-			else
-			{
-				try
+				int progress = channel.getProgress();
+				if( progress >= 0 )
 				{
-					if( progressBar != null )
-					{
-						if( resultOperation.progress >= 0 )
-						{
-							if( progressBar.isIndeterminate() )
-								progressBar.setIndeterminate( false );
+					if( progressBar.isIndeterminate() )
+						progressBar.setIndeterminate( false );
 
-							progressBar.setProgress( resultOperation.progress );
-						}
-						else if( !progressBar.isIndeterminate() )
-							progressBar.setIndeterminate( true );
-					}
-				}
-				finally
-				{
-					uiUpdateHandler.postDelayed( progressBarUpdateTask, uiUpdateInterval );
+					progressBar.setProgress( progress );
 				}
+				else if( !progressBar.isIndeterminate() )
+					progressBar.setIndeterminate( true );
 			}
+
+			if( transferDetailsText != null )
+				transferDetailsText.setText( getTransferDetails( channel ) );
+		}
+
+		@Override
+		public void onCompleted( NativeFilePickerProgressChannel channel )
+		{
+			resultOperation.sendResultToUnity();
+			dismissAllowingStateLoss();
 		}
 	};
 
@@ -64,7 +61,7 @@ public class NativeFilePickerPickResultFragment extends DialogFragment
 		resultOperation = null;
 	}
 
-	public NativeFilePickerPickResultFragment( final NativeFilePickerPickResultOperation resultOperation )
+	public NativeFilePickerPickResultFragment( final NativeFilePickerOperation resultOperation )
 	{
 		this.resultOperation = resultOperation;
 	}
@@ -75,14 +72,14 @@ public class NativeFilePickerPickResultFragment extends DialogFragment
 		super.onCreate( savedInstanceState );
 		setRetainInstance( true ); // Required to preserve threads and stuff in case the configuration changes (e.g. orientation change)
 
-		new Thread( new Runnable()
+		// Retained fragments are still recreated from scratch if the app's process is killed in the background, the operation is lost in that case
+		if( resultOperation == null )
 		{
-			@Override
-			public void run()
-			{
-				resultOperation.execute();
-			}
-		} ).start();
+			Log.e( "Unity", "NativeFilePickerPickResultFragment.resultOperation became null in onCreate!" );
+			dismissAllowingStateLoss();
+		}
+		else
+			resultOperation.executeInBackground();
 	}
 
 	@Override
@@ -123,14 +120,32 @@ public class NativeFilePickerPickResultFragment extends DialogFragment
 
 		layout.addView( progressBar );
 
+		if( showTransferDetails )
+		{
+			layoutParams = new LinearLayout.LayoutParams( LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT );
+			layoutParams.gravity = Gravity.CENTER;
+
+			transferDetailsText = new TextView( getActivity() );
+			transferDetailsText.setTextColor( Color.BLACK );
+			transferDetailsText.setTextSize( 14 );
+			transferDetailsText.setGravity( Gravity.CENTER );
+			transferDetailsText.setPadding( 0, 15, 0, 0 );
+			transferDetailsText.setLayoutParams( layoutParams );
+
+			layout.addView( transferDetailsText );
+		}
+
 		AlertDialog dialog = new AlertDialog.Builder( getActivity() )
 				.setNegativeButton( android.R.string.cancel, new DialogInterface.OnClickListener()
 				{
 					@Override
 					public void onClick( DialogInterface dialog, int which )
 					{
-						resultOperation.cancel();
-						resultOperation.sendResultToUnity();
+						if( resultOperation != null )
+						{
+							resultOperation.cancel();
+							resultOperation.sendResultToUnity();
+						}
 
 						dismissAllowingStateLoss();
 					}
@@ -144,18 +159,50 @@ public class NativeFilePickerPickResultFragment extends DialogFragment
 		return dialog;
 	}
 
+	// Copied and total sizes, followed by the copy speed and the remaining time (if they can be estimated)
+	private String getTransferDetails( NativeFilePickerProgressChannel channel )
+	{
+		long totalBytes = channel.getTotalBytes();
+		if( totalBytes <= 0L || getActivity() == null )
+			return "";
+
+		StringBuilder result = new StringBuilder( 64 );
+		result.append( Formatter.formatShortFileSize( getActivity(), channel.getProcessedBytes() ) ).append( " / " ).append( Formatter.formatShortFileSize( getActivity(), totalBytes ) );
+
+		long bytesPerSecond = channel.getBytesPerSecond();
+		if( bytesPerSecond >= 0L )
+		{
+			result.append( '\n' ).append( Formatter.formatShortFileSize( getActivity(), bytesPerSecond ) ).append( "/s" );
+
+			long remainingMillis = channel.getRemainingMillis();
+			if( remainingMillis >= 0L )
+				result.append( ", " ).append( DateUtils.formatElapsedTime( ( remainingMillis + 999L ) / 1000L ) ).append( " left" );
+		}
+
+		return result.toString();
+	}
+
 	@Override
 	public void onActivityCreated( Bundle savedInstanceState )
 	{
 		super.onActivityCreated( savedInstanceState );
-		progressBarUpdateTask.run();
+
+		// Views are recreated after configuration changes, show the current progress on them immediately
+		if( resultOperation != null )
+		{
+			progressListener.onProgressChanged( resultOperation.getProgressChannel() );
+			resultOperation.getProgressChannel().addListener( progressListener );
+		}
 	}
 
 	@Override
 	public void onDetach()
 	{
 		progressBar = null;
-		uiUpdateHandler.removeCallbacks( progressBarUpdateTask );
+		transferDetailsText = null;
+
+		if( resultOperation != null )
+			resultOperation.getProgressChannel().removeListener( progressListener );
 
 		super.onDetach();
 	}
@@ -164,13 +211,17 @@ public class NativeFilePickerPickResultFragment extends DialogFragment
 	public void onDismiss( DialogInterface dialog )
 	{
 		super.onDismiss( dialog );
-		resultOperation.sendResultToUnity();
+
+		if( resultOperation != null )
+			resultOperation.sendResultToUnity();
 	}
 
 	@Override
 	public void onDestroy()
 	{
 		super.onDestroy();
-		resultOperation.sendResultToUnity();
+
+		if( resultOperation != null )
+			resultOperation.sendResultToUnity();
 	}
 }
\ No newline at end of file
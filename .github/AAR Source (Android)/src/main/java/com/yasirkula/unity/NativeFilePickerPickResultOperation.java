@@ -1,133 +1,349 @@
 package com.yasirkula.unity;
 
+import android.content.ClipData;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
+import android.content.res.AssetFileDescriptor;
 import android.net.Uri;
-import android.provider.OpenableColumns;
 import android.util.Log;
 import android.webkit.MimeTypeMap;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.ArrayList;
-
-public class NativeFilePickerPickResultOperation
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class NativeFilePickerPickResultOperation extends NativeFilePickerOperation
 {
+	private static final int RESULT_FIELD_COUNT = 5;
+
+	private interface FileTask
+	{
+		boolean run( NativeFilePickerUriInfo file );
+	}
+
+	private class CopyProgress implements NativeFilePickerFileTransfer.Listener
+	{
+		public final long expectedBytes;
+		public long copiedBytes;
+
+		public CopyProgress( long expectedBytes )
+		{
+			this.expectedBytes = expectedBytes;
+		}
+
+		@Override
+		public boolean isCancelled()
+		{
+			return progressChannel.isCancelled();
+		}
+
+		@Override
+		public void onBytesTransferred( long bytes )
+		{
+			// Files that turn out to be larger than expected (e.g. their sizes weren't known beforehand) grow the total size
+			long unexpectedBytes = Math.min( bytes, copiedBytes + bytes - expectedBytes );
+			if( unexpectedBytes > 0L )
+				progressChannel.addTotalBytes( unexpectedBytes );
+
+			copiedBytes += bytes;
+			progressChannel.addProcessedBytes( bytes );
+		}
+	}
+
 	private final Context context;
-	private final NativeFilePickerResultReceiver mediaReceiver;
 	private final Intent data;
 	private final boolean selectMultiple;
 	private final String savePathDirectory, savePathFilename;
-	private ArrayList<String> savedFiles;
+	private NativeFilePickerFilenameAllocator filenameAllocator;
 
-	public boolean finished, sentResult;
-	public int progress;
-
-	private boolean cancelled;
-	private String unityResult;
+	private String unityResult = "";
 
 	public NativeFilePickerPickResultOperation( final Context context, final NativeFilePickerResultReceiver resultReceiver, final Intent data, final boolean selectMultiple, final String savePathDirectory, final String savePathFilename )
 	{
+		super( resultReceiver );
+
 		this.context = context;
-		this.mediaReceiver = resultReceiver;
 		this.data = data;
 		this.selectMultiple = selectMultiple;
 		this.savePathDirectory = savePathDirectory;
 		this.savePathFilename = savePathFilename;
 	}
 
+	@Override
 	public void execute()
 	{
 		unityResult = "";
-		progress = -1;
+
+		// Previously copied files that are tracked by the import cache must not be overwritten by the newly picked files. Other files in the directory
+		// are overwritten on purpose so that the directory doesn't keep growing with each pick operation
+		if( NativeFilePickerPickFragment.importCacheMaxSize > 0L )
+			filenameAllocator = new NativeFilePickerFilenameAllocator( NativeFilePickerImportCache.getInstance( context ).getCachedFilenames( savePathDirectory ) );
+		else
+			filenameAllocator = new NativeFilePickerFilenameAllocator( Collections.<String>emptyList() );
 
 		try
 		{
-			if( !selectMultiple || data.getClipData() == null )
+			NativeFilePickerUriInfo[] files;
+			ClipData clipData = selectMultiple ? data.getClipData() : null;
+			if( clipData == null )
+				files = new NativeFilePickerUriInfo[] { ( data.getData() != null ) ? new NativeFilePickerUriInfo( data.getData() ) : null };
+			else
 			{
-				String _unityResult = getPathFromURI( data.getData() );
-				if( _unityResult != null && _unityResult.length() > 0 && new File( _unityResult ).exists() )
-					unityResult = _unityResult;
+				files = new NativeFilePickerUriInfo[clipData.getItemCount()];
+				for( int i = 0; i < files.length; i++ )
+				{
+					Uri uri = clipData.getItemAt( i ).getUri();
+					if( uri != null )
+						files[i] = new NativeFilePickerUriInfo( uri );
+				}
+			}
+
+			if( importFiles( files ) )
+				unityResult = buildUnityResult( files );
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+		}
+		finally
+		{
+			if( NativeFilePickerPickFragment.importCacheMaxSize > 0L )
+				NativeFilePickerImportCache.getInstance( context ).saveIfDirty();
 
-				Log.d( "Unity", "NativeFilePickerPickResultOperation: " + _unityResult );
+			progressChannel.finish();
+		}
+	}
+
+	// Files are imported in two passes: first, the paths of all files are resolved and the sizes of the files that must be copied are summed,
+	// so that the progress can be weighted by the files' sizes for the whole batch. Then, those files are copied. Failed imports are replaced with null in the array.
+	// Returns false if the operation was cancelled
+	private boolean importFiles( final NativeFilePickerUriInfo[] files ) throws InterruptedException
+	{
+		boolean completed = runForEachFile( files, new FileTask()
+		{
+			@Override
+			public boolean run( NativeFilePickerUriInfo file )
+			{
+				return resolveFile( file );
 			}
-			else
+		} );
+
+		if( !completed )
+			return false;
+
+		long bytesToCopy = 0L;
+		int filesToCopy = 0;
+		for( NativeFilePickerUriInfo file : files )
+		{
+			if( file != null && file.path == null )
 			{
-				boolean isFirstResult = true;
-				for( int i = 0, count = data.getClipData().getItemCount(); i < count; i++ )
-				{
-					if( cancelled )
-						return;
+				bytesToCopy += getExpectedCopySize( file );
+				filesToCopy++;
+			}
+		}
+
+		progressChannel.startTransfer( bytesToCopy, filesToCopy );
 
-					String _unityResult = getPathFromURI( data.getClipData().getItemAt( i ).getUri() );
-					if( _unityResult != null && _unityResult.length() > 0 && new File( _unityResult ).exists() )
+		return runForEachFile( files, new FileTask()
+		{
+			@Override
+			public boolean run( NativeFilePickerUriInfo file )
+			{
+				if( file.path == null )
+				{
+					String path;
+					try
 					{
-						if( isFirstResult )
-						{
-							unityResult += _unityResult;
-							isFirstResult = false;
-						}
-						else
-							unityResult += ">" + _unityResult;
+						path = copyToTempFile( file );
 					}
+					finally
+					{
+						progressChannel.addProcessedFiles( 1 );
+					}
+
+					Log.d( "Unity", "NativeFilePickerPickResultOperation: " + path );
 
-					Log.d( "Unity", "NativeFilePickerPickResultOperation: " + _unityResult );
+					if( path == null || path.length() == 0 || !new File( path ).exists() )
+						return false;
+
+					file.setPath( path );
 				}
+
+				// Files that weren't copied (i.e. directly accessible files and the files that were found in the import cache) are hashed here
+				if( NativeFilePicker.ComputeFileDigests && file.digest == null )
+				{
+					try
+					{
+						file.digest = NativeFilePickerFileTransfer.computeDigest( new FileInputStream( file.path ), file.size );
+					}
+					catch( Exception e )
+					{
+						Log.e( "Unity", "Exception:", e );
+					}
+				}
+
+				return true;
 			}
+		} );
+	}
+
+	// Runs the task for each file on a bounded thread pool (simultaneous imports speed up cloud-backed document providers). Files for which the
+	// task fails are replaced with null. Returns false if the operation was cancelled
+	private boolean runForEachFile( final NativeFilePickerUriInfo[] files, final FileTask task ) throws InterruptedException
+	{
+		if( files.length == 1 )
+		{
+			runFileTask( files, 0, task );
+			return !progressChannel.isCancelled();
 		}
-		catch( Exception e )
+
+		ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, Math.min( NativeFilePickerPickFragment.maxConcurrentImports, files.length ) ) );
+		try
 		{
-			Log.e( "Unity", "Exception:", e );
+			for( int i = 0; i < files.length; i++ )
+			{
+				final int index = i;
+				executor.execute( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						runFileTask( files, index, task );
+					}
+				} );
+			}
 		}
 		finally
 		{
-			progress = 100;
-			finished = true;
+			executor.shutdown();
 		}
+
+		while( !executor.awaitTermination( 1L, TimeUnit.SECONDS ) )
+		{
+			if( progressChannel.isCancelled() )
+				executor.shutdownNow();
+		}
+
+		return !progressChannel.isCancelled();
 	}
 
-	public void cancel()
+	private void runFileTask( NativeFilePickerUriInfo[] files, int index, FileTask task )
 	{
-		if( cancelled || finished )
+		if( progressChannel.isCancelled() || files[index] == null )
 			return;
 
-		Log.d( "Unity", "Cancelled NativeFilePickerPickResultOperation!" );
+		try
+		{
+			if( !task.run( files[index] ) )
+				files[index] = null;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			files[index] = null;
+		}
+	}
 
-		cancelled = true;
-		unityResult = "";
+	@Override
+	protected void sendResult( NativeFilePickerResultReceiver resultReceiver, boolean finished )
+	{
+		String result = finished ? unityResult : "";
+		if( selectMultiple )
+			resultReceiver.OnMultipleFilesPicked( result );
+		else
+			resultReceiver.OnFilePicked( result );
 	}
 
-	public void sendResultToUnity()
+	@Override
+	protected void sendProgress( NativeFilePickerResultReceiver resultReceiver, NativeFilePickerProgressChannel progressChannel )
 	{
-		if( sentResult )
-			return;
+		resultReceiver.OnImportProgressChanged( progressChannel.getProcessedBytes(), progressChannel.getTotalBytes(), progressChannel.getProcessedFiles(), progressChannel.getTotalFiles(), progressChannel.getBytesPerSecond(), progressChannel.getRemainingMillis() );
+	}
+
+	// Result format: every token is written as "<length>:<value>". The first two tokens are the number of fields per file and the number of files.
+	// Then, each file's fields follow in this order: path, original filename, size, MIME type (empty if unknown), SHA-256 digest (empty if it wasn't computed)
+	private static String buildUnityResult( NativeFilePickerUriInfo[] files )
+	{
+		int fileCount = 0;
+		int capacity = 0;
+		for( int i = 0; i < files.length; i++ )
+		{
+			NativeFilePickerUriInfo file = files[i];
+			if( file != null )
+			{
+				fileCount++;
+				capacity += getResultTokenLength( file.path ) + getResultTokenLength( file.displayName ) + getResultTokenLength( Long.toString( file.size ) ) + getResultTokenLength( file.mimeType ) + getResultTokenLength( file.digest );
+			}
+		}
 
-		sentResult = true;
+		if( fileCount == 0 )
+			return "";
 
-		if( mediaReceiver == null )
-			Log.d( "Unity", "NativeFilePickerPickResultOperation.mediaReceiver became null in sendResultToUnity!" );
-		else
+		String fieldCountToken = Integer.toString( RESULT_FIELD_COUNT ), fileCountToken = Integer.toString( fileCount );
+		StringBuilder result = new StringBuilder( capacity + getResultTokenLength( fieldCountToken ) + getResultTokenLength( fileCountToken ) );
+		appendResultToken( result, fieldCountToken );
+		appendResultToken( result, fileCountToken );
+
+		for( int i = 0; i < files.length; i++ )
 		{
-			if( selectMultiple )
-				mediaReceiver.OnMultipleFilesPicked( unityResult );
-			else
-				mediaReceiver.OnFilePicked( unityResult );
+			NativeFilePickerUriInfo file = files[i];
+			if( file != null )
+			{
+				appendResultToken( result, file.path );
+				appendResultToken( result, file.displayName );
+				appendResultToken( result, Long.toString( file.size ) );
+				appendResultToken( result, file.mimeType );
+				appendResultToken( result, file.digest );
+			}
 		}
+
+		return result.toString();
 	}
 
-	private String getPathFromURI( Uri uri )
+	private static int getResultTokenLength( String value )
 	{
-		if( uri == null )
-			return null;
+		int length = ( value != null ) ? value.length() : 0;
+		return Integer.toString( length ).length() + 1 + length;
+	}
 
+	private static void appendResultToken( StringBuilder result, String value )
+	{
+		if( value == null )
+			value = "";
+
+		result.append( value.length() ).append( ':' ).append( value );
+	}
+
+	// Sets the file's path if it's directly accessible. Otherwise, fetches the file's metadata so that it can be copied later on
+	private boolean resolveFile( NativeFilePickerUriInfo uriInfo )
+	{
+		Uri uri = uriInfo.uri;
 		Log.d( "Unity", "Selected media uri: " + uri.toString() );
 
-		String path = NativeFilePickerUtils.GetPathFromURI( context, uri );
+		// Skip the content provider query and the accessibility check if the URI was resolved to an accessible file before and the file hasn't
+		// changed since then
+		NativeFilePickerPathCache.Entry cachedEntry = NativeFilePickerPathCache.get( uri );
+		if( cachedEntry != null )
+		{
+			if( cachedEntry.displayName != null )
+				uriInfo.displayName = cachedEntry.displayName;
+			if( cachedEntry.mimeType != null )
+				uriInfo.mimeType = cachedEntry.mimeType;
+
+			Log.d( "Unity", "NativeFilePickerPickResultOperation (cached): " + cachedEntry.path );
+
+			uriInfo.setPath( cachedEntry.path );
+			return true;
+		}
+
+		String path = NativeFilePickerUtils.GetPathFromURI( context, uri, uriInfo );
 		if( path != null && path.length() > 0 )
 		{
 			// Check if file is accessible
@@ -137,7 +353,11 @@ public class NativeFilePickerPickResultOperation
 				inputStream = new FileInputStream( new File( path ) );
 				inputStream.read();
 
-				return path;
+				Log.d( "Unity", "NativeFilePickerPickResultOperation: " + path );
+
+				NativeFilePickerPathCache.put( context, uri, path, uriInfo );
+				uriInfo.setPath( path );
+				return true;
 			}
 			catch( Exception e )
 			{
@@ -158,36 +378,40 @@ public class NativeFilePickerPickResultOperation
 			}
 		}
 
-		// File path couldn't be determined, copy the file to an accessible temporary location
-		return copyToTempFile( uri );
+		// File path couldn't be determined, the file will be copied to an accessible temporary location
+		uriInfo.queryMetadata( context );
+		return true;
 	}
 
-	private String copyToTempFile( Uri uri )
+	private static long getExpectedCopySize( NativeFilePickerUriInfo uriInfo )
 	{
-		// Credit: https://developer.android.com/training/secure-file-sharing/retrieve-info.html#RetrieveFileInfo
-		ContentResolver resolver = context.getContentResolver();
-		Cursor returnCursor = null;
-		String filename = null;
-		long fileSize = -1, copiedBytes = 0;
+		return Math.max( uriInfo.size, 0L );
+	}
 
+	private String copyToTempFile( NativeFilePickerUriInfo uriInfo )
+	{
+		CopyProgress copyProgress = new CopyProgress( getExpectedCopySize( uriInfo ) );
 		try
 		{
-			returnCursor = resolver.query( uri, null, null, null, null );
-			if( returnCursor != null && returnCursor.moveToFirst() )
-			{
-				filename = returnCursor.getString( returnCursor.getColumnIndex( OpenableColumns.DISPLAY_NAME ) );
-				fileSize = returnCursor.getLong( returnCursor.getColumnIndex( OpenableColumns.SIZE ) );
-			}
-		}
-		catch( Exception e )
-		{
-			Log.e( "Unity", "Exception:", e );
+			return copyToTempFile( uriInfo, copyProgress );
 		}
 		finally
 		{
-			if( returnCursor != null )
-				returnCursor.close();
+			// Bytes that weren't copied (e.g. the file was found in the import cache or the copy failed) no longer count towards the total size
+			if( copyProgress.copiedBytes < copyProgress.expectedBytes )
+				progressChannel.addTotalBytes( copyProgress.copiedBytes - copyProgress.expectedBytes );
 		}
+	}
+
+	private String copyToTempFile( NativeFilePickerUriInfo uriInfo, CopyProgress copyProgress )
+	{
+		Uri uri = uriInfo.uri;
+		ContentResolver resolver = context.getContentResolver();
+
+		uriInfo.queryMetadata( context ); // No-op if metadata was already fetched while resolving the URI's path
+
+		String filename = uriInfo.displayName;
+		long sourceSize = uriInfo.size, sourceLastModified = uriInfo.lastModified;
 
 		if( filename == null || filename.length() < 3 )
 			filename = "temp";
@@ -198,7 +422,7 @@ public class NativeFilePickerPickResultOperation
 			extension = filename.substring( filenameExtensionIndex );
 		else
 		{
-			String mime = resolver.getType( uri );
+			String mime = ( uriInfo.mimeType != null ) ? uriInfo.mimeType : resolver.getType( uri );
 			if( mime != null )
 			{
 				String mimeExtension = MimeTypeMap.getSingleton().getExtensionFromMimeType( mime );
@@ -215,103 +439,102 @@ public class NativeFilePickerPickResultOperation
 		else if( filename.endsWith( extension ) )
 			filename = filename.substring( 0, filename.length() - extension.length() );
 
+		// Files whose size and last modified date are unknown can't be cached since we can't detect whether or not they've changed
+		boolean useImportCache = NativeFilePickerPickFragment.importCacheMaxSize > 0L && sourceSize >= 0L && sourceLastModified > 0L;
+		if( useImportCache )
+		{
+			String cachedPath = NativeFilePickerImportCache.getInstance( context ).get( uri, sourceSize, sourceLastModified, savePathDirectory );
+			if( cachedPath != null && filenameAllocator.reserveExisting( new File( cachedPath ).getName() ) )
+			{
+				Log.d( "Unity", "Using previously copied media for " + uri + ": " + cachedPath );
+				return cachedPath;
+			}
+		}
+
+		AssetFileDescriptor sourceDescriptor = null;
 		try
 		{
-			InputStream input = resolver.openInputStream( uri );
-			if( input == null )
+			sourceDescriptor = resolver.openAssetFileDescriptor( uri, "r" );
+			if( sourceDescriptor == null )
 			{
 				Log.w( "Unity", "Couldn't open input stream: " + uri );
 				return null;
 			}
 
-			if( fileSize < 0 )
-			{
-				try
-				{
-					fileSize = input.available();
-				}
-				catch( Exception e )
-				{
-				}
+			// Files are copied simultaneously while picking multiple files, so the filename is reserved before copying starts
+			String fullName = filenameAllocator.allocate( filename, extension );
 
-				if( fileSize < 0 )
-					fileSize = 0;
-			}
+			File tempFile = new File( savePathDirectory, fullName );
 
-			String fullName = filename + extension;
-			if( savedFiles != null )
+			// Linked files don't use extra storage, so they aren't added to the import cache
+			if( NativeFilePicker.LinkPickedFiles && NativeFilePickerFileTransfer.link( sourceDescriptor, tempFile ) )
 			{
-				int n = 1;
-				for( int i = 0; i < savedFiles.size(); i++ )
-				{
-					if( savedFiles.get( i ).equals( fullName ) )
-					{
-						n++;
-						fullName = filename + n + extension;
-						i = -1;
-					}
-				}
+				Log.d( "Unity", "Linked media from " + uri + " to: " + tempFile.getAbsolutePath() );
+				return tempFile.getAbsolutePath();
 			}
 
-			File tempFile = new File( savePathDirectory, fullName );
-			OutputStream output = null;
+			// The existing file may be a hard link to a previously picked file, truncating it would also truncate that file
+			tempFile.delete();
+
+			FileOutputStream output = null;
 			try
 			{
-				output = new FileOutputStream( tempFile, false );
-				progress = ( fileSize > 0 ) ? 0 : -1;
+				// The file is hashed while it's being copied, so that it doesn't have to be read again
+				MessageDigest digest = NativeFilePicker.ComputeFileDigests ? NativeFilePickerFileTransfer.createDigest() : null;
 
-				byte[] buf = new byte[4096];
-				int len;
-				while( ( len = input.read( buf ) ) > 0 )
-				{
-					if( cancelled )
-						break;
+				output = new FileOutputStream( tempFile, false );
+				NativeFilePickerFileTransfer.copy( sourceDescriptor, output, sourceSize, copyProgress, digest );
 
-					output.write( buf, 0, len );
+				output.close();
+				output = null;
 
-					if( fileSize > 0 )
-					{
-						copiedBytes += len;
+				if( progressChannel.isCancelled() )
+					tempFile.delete();
+				else
+				{
+					if( digest != null )
+						uriInfo.digest = NativeFilePickerFileTransfer.toHexString( digest.digest() );
 
-						progress = (int) ( ( (double) copiedBytes / fileSize ) * 100 );
-						if( progress > 100 )
-							progress = 100;
-					}
+					if( useImportCache )
+						NativeFilePickerImportCache.getInstance( context ).put( uri, sourceSize, sourceLastModified, tempFile, NativeFilePickerPickFragment.importCacheMaxSize );
 				}
 
-				if( cancelled )
+				Log.d( "Unity", "Copied media from " + uri + " to: " + tempFile.getAbsolutePath() );
+				return tempFile.getAbsolutePath();
+			}
+			catch( IOException e )
+			{
+				// Don't leave the partial copy behind
+				if( output != null )
 				{
 					output.close();
 					output = null;
-
-					tempFile.delete();
-				}
-				else if( fileSize > 0 )
-					progress = 100;
-
-				if( selectMultiple )
-				{
-					if( savedFiles == null )
-						savedFiles = new ArrayList<String>();
-
-					savedFiles.add( fullName );
 				}
 
-				Log.d( "Unity", "Copied media from " + uri + " to: " + tempFile.getAbsolutePath() );
-				return tempFile.getAbsolutePath();
+				tempFile.delete();
+				throw e;
 			}
 			finally
 			{
 				if( output != null )
 					output.close();
-
-				input.close();
 			}
 		}
 		catch( Exception e )
 		{
 			Log.e( "Unity", "Exception:", e );
 		}
+		finally
+		{
+			try
+			{
+				if( sourceDescriptor != null )
+					sourceDescriptor.close();
+			}
+			catch( Exception e )
+			{
+			}
+		}
 
 		return null;
 	}
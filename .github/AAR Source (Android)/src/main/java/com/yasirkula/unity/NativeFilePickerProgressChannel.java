@@ -0,0 +1,247 @@
+package com.yasirkula.unity;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Progress and state of a background operation. Worker threads update the counters while listeners are notified on the main thread. Progress
+// notifications are throttled: at most one notification is dispatched per minimum dispatch interval, no matter how often the counters change
+public class NativeFilePickerProgressChannel
+{
+	public static final int STATE_RUNNING = 0;
+	public static final int STATE_FINISHED = 1;
+	public static final int STATE_CANCELLED = 2;
+
+	private static final long TRANSFER_RATE_SAMPLE_INTERVAL = 500L;
+	private static final double TRANSFER_RATE_SMOOTHING = 0.3;
+	private static final long STALLED_DISPATCH_INTERVAL = 1000L; // While the counters aren't changing, listeners are still notified periodically so that they can see the transfer rate decay
+
+	public interface Listener
+	{
+		void onProgressChanged( NativeFilePickerProgressChannel channel );
+		void onCompleted( NativeFilePickerProgressChannel channel ); // Called when the operation finishes or is cancelled
+	}
+
+	private final AtomicInteger state = new AtomicInteger( STATE_RUNNING );
+	private final AtomicLong processedBytes = new AtomicLong(), totalBytes = new AtomicLong();
+	private final AtomicInteger processedFiles = new AtomicInteger(), totalFiles = new AtomicInteger();
+	private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	private final long minDispatchInterval;
+	private final Handler mainHandler = new Handler( Looper.getMainLooper() );
+	private final AtomicBoolean isDispatchScheduled = new AtomicBoolean();
+	private volatile long lastDispatchTime;
+
+	private long transferStartTime, lastTransferRateSampleTime, lastTransferRateSampleBytes;
+	private double bytesPerSecond = -1.0;
+
+	private final Runnable dispatchProgressTask = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			// Pending dispatches are removed before resetting the flag, otherwise a dispatch scheduled in between could be removed
+			mainHandler.removeCallbacks( dispatchProgressTask );
+			isDispatchScheduled.set( false );
+
+			if( state.get() != STATE_RUNNING )
+				return;
+
+			lastDispatchTime = SystemClock.elapsedRealtime();
+			for( Listener listener : listeners )
+				listener.onProgressChanged( NativeFilePickerProgressChannel.this );
+
+			mainHandler.postDelayed( dispatchProgressTask, STALLED_DISPATCH_INTERVAL );
+		}
+	};
+
+	private final Runnable dispatchCompletedTask = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			mainHandler.removeCallbacks( dispatchProgressTask );
+
+			for( Listener listener : listeners )
+			{
+				listener.onProgressChanged( NativeFilePickerProgressChannel.this );
+				listener.onCompleted( NativeFilePickerProgressChannel.this );
+			}
+		}
+	};
+
+	public NativeFilePickerProgressChannel( long minDispatchInterval )
+	{
+		this.minDispatchInterval = minDispatchInterval;
+	}
+
+	// Must be called on the main thread. If the operation has already completed, the listener is notified immediately
+	public void addListener( Listener listener )
+	{
+		listeners.addIfAbsent( listener );
+
+		if( state.get() != STATE_RUNNING )
+		{
+			listener.onProgressChanged( this );
+			listener.onCompleted( this );
+		}
+	}
+
+	public void removeListener( Listener listener )
+	{
+		listeners.remove( listener );
+	}
+
+	public int getState()
+	{
+		return state.get();
+	}
+
+	public boolean isRunning()
+	{
+		return state.get() == STATE_RUNNING;
+	}
+
+	public boolean isCancelled()
+	{
+		return state.get() == STATE_CANCELLED;
+	}
+
+	// Returns false if the operation has already completed
+	public boolean finish()
+	{
+		return complete( STATE_FINISHED );
+	}
+
+	// Returns false if the operation has already completed
+	public boolean cancel()
+	{
+		return complete( STATE_CANCELLED );
+	}
+
+	private boolean complete( int newState )
+	{
+		if( !state.compareAndSet( STATE_RUNNING, newState ) )
+			return false;
+
+		mainHandler.post( dispatchCompletedTask );
+		return true;
+	}
+
+	// Marks the beginning of the transfer for the transfer rate estimation
+	public synchronized void startTransfer( long totalBytes, int totalFiles )
+	{
+		this.totalBytes.set( totalBytes );
+		this.totalFiles.set( totalFiles );
+
+		transferStartTime = lastTransferRateSampleTime = SystemClock.elapsedRealtime();
+		lastTransferRateSampleBytes = processedBytes.get();
+
+		scheduleDispatch();
+	}
+
+	public void addProcessedBytes( long bytes )
+	{
+		processedBytes.addAndGet( bytes );
+		scheduleDispatch();
+	}
+
+	// Used when the total size changes during the transfer (e.g. a file turned out to be larger or smaller than expected)
+	public void addTotalBytes( long bytes )
+	{
+		totalBytes.addAndGet( bytes );
+		scheduleDispatch();
+	}
+
+	public void addProcessedFiles( int files )
+	{
+		processedFiles.addAndGet( files );
+		scheduleDispatch();
+	}
+
+	// Used when the files are discovered during the transfer (e.g. while traversing a folder)
+	public void addTotalFiles( int files )
+	{
+		totalFiles.addAndGet( files );
+		scheduleDispatch();
+	}
+
+	public int getProcessedFiles()
+	{
+		return processedFiles.get();
+	}
+
+	public int getTotalFiles()
+	{
+		return totalFiles.get();
+	}
+
+	public long getProcessedBytes()
+	{
+		return processedBytes.get();
+	}
+
+	public long getTotalBytes()
+	{
+		return totalBytes.get();
+	}
+
+	// Percentage of the processed bytes, -1 if it's unknown (e.g. the total size is still being calculated)
+	public int getProgress()
+	{
+		long total = totalBytes.get();
+		if( total <= 0L )
+			return ( state.get() == STATE_FINISHED ) ? 100 : -1;
+
+		return (int) Math.min( 100L, processedBytes.get() * 100L / total );
+	}
+
+	// Exponential moving average of the transfer rate that is sampled at most twice a second: short hiccups are smoothed out while a stalled
+	// transfer becomes noticeable within a few seconds. Returns -1 until the first sample is taken
+	public synchronized long getBytesPerSecond()
+	{
+		if( transferStartTime <= 0L )
+			return -1L;
+
+		long now = SystemClock.elapsedRealtime();
+		long elapsed = now - lastTransferRateSampleTime;
+		if( elapsed >= TRANSFER_RATE_SAMPLE_INTERVAL )
+		{
+			long bytes = processedBytes.get();
+			double sample = ( bytes - lastTransferRateSampleBytes ) * 1000.0 / elapsed;
+			bytesPerSecond = ( bytesPerSecond < 0.0 ) ? sample : bytesPerSecond + TRANSFER_RATE_SMOOTHING * ( sample - bytesPerSecond );
+
+			lastTransferRateSampleTime = now;
+			lastTransferRateSampleBytes = bytes;
+		}
+
+		return (long) bytesPerSecond;
+	}
+
+	// Returns -1 if the remaining time can't be estimated (e.g. the transfer rate isn't known yet or the transfer is stalled)
+	public long getRemainingMillis()
+	{
+		long bytesPerSecond = getBytesPerSecond(), total = totalBytes.get();
+		if( bytesPerSecond <= 0L || total <= 0L )
+			return -1L;
+
+		return Math.max( 0L, total - processedBytes.get() ) * 1000L / bytesPerSecond;
+	}
+
+	private void scheduleDispatch()
+	{
+		if( state.get() != STATE_RUNNING || !isDispatchScheduled.compareAndSet( false, true ) )
+			return;
+
+		long delay = lastDispatchTime + minDispatchInterval - SystemClock.elapsedRealtime();
+		if( delay > 0L )
+			mainHandler.postDelayed( dispatchProgressTask, delay );
+		else
+			mainHandler.post( dispatchProgressTask );
+	}
+}
\ No newline at end of file
@@ -4,5 +4,9 @@ public interface NativeFilePickerResultReceiver
 {
 	void OnFilePicked( String path );
 	void OnMultipleFilesPicked( String paths );
+	void OnFileStreamPicked( int handle );
+	void OnFolderPicked( String path );
+	void OnImportProgressChanged( long processedBytes, long totalBytes, int processedFiles, int totalFiles, long bytesPerSecond, long remainingMillis );
+	void OnExportProgressChanged( long processedBytes, long totalBytes, int processedFiles, int totalFiles, long bytesPerSecond, long remainingMillis );
 	void OnFilesExported( boolean result );
 }
\ No newline at end of file
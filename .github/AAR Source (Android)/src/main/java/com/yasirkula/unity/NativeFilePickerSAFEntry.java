@@ -14,6 +14,10 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Locale;
 
 /*
  * Copyright (C) 2014 The Android Open Source Project
@@ -37,16 +41,116 @@ public class NativeFilePickerSAFEntry
 {
 	private static final String TAG = "DocumentFile";
 
+	// Document columns that are fetched with a single query
+	private static final String[] METADATA_PROJECTION = new String[] {
+			DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+			DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+			DocumentsContract.Document.COLUMN_MIME_TYPE,
+			DocumentsContract.Document.COLUMN_FLAGS,
+			DocumentsContract.Document.COLUMN_SIZE,
+			DocumentsContract.Document.COLUMN_LAST_MODIFIED };
+
+	// Immutable snapshot of a document's metadata. Values that the document provider doesn't report keep their default values
+	public static class Metadata
+	{
+		public static final Metadata EMPTY = new Metadata( null, null, 0, 0L, 0L );
+
+		public final String name;
+		public final String rawType; // MIME type as reported by the document provider (MIME_TYPE_DIR for directories)
+		public final int flags;
+		public final long size;
+		public final long lastModified;
+
+		private Metadata( String name, String rawType, int flags, long size, long lastModified )
+		{
+			this.name = name;
+			this.rawType = rawType;
+			this.flags = flags;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		// Cursor must be positioned at a row that was queried with METADATA_PROJECTION
+		private static Metadata fromCursor( Cursor c )
+		{
+			return new Metadata( c.isNull( 1 ) ? null : c.getString( 1 ),
+					c.isNull( 2 ) ? null : c.getString( 2 ),
+					c.isNull( 3 ) ? 0 : c.getInt( 3 ),
+					c.isNull( 4 ) ? 0L : c.getLong( 4 ),
+					c.isNull( 5 ) ? 0L : c.getLong( 5 ) );
+		}
+	}
+
+	public interface Filter
+	{
+		boolean accept( NativeFilePickerSAFEntry entry );
+	}
+
+	public static final Filter FILES_ONLY = new Filter()
+	{
+		@Override
+		public boolean accept( NativeFilePickerSAFEntry entry )
+		{
+			return entry.isFile();
+		}
+	};
+
+	public static final Filter DIRECTORIES_ONLY = new Filter()
+	{
+		@Override
+		public boolean accept( NativeFilePickerSAFEntry entry )
+		{
+			return entry.isDirectory();
+		}
+	};
+
+	public static final Comparator<NativeFilePickerSAFEntry> SORT_BY_NAME = new Comparator<NativeFilePickerSAFEntry>()
+	{
+		@Override
+		public int compare( NativeFilePickerSAFEntry entry1, NativeFilePickerSAFEntry entry2 )
+		{
+			String name1 = entry1.getName(), name2 = entry2.getName();
+			if( name1 == null || name2 == null )
+				return ( name1 == null ) ? ( ( name2 == null ) ? 0 : 1 ) : -1;
+
+			return name1.compareToIgnoreCase( name2 );
+		}
+	};
+
+	public static final Comparator<NativeFilePickerSAFEntry> SORT_BY_LAST_MODIFIED = new Comparator<NativeFilePickerSAFEntry>()
+	{
+		@Override
+		public int compare( NativeFilePickerSAFEntry entry1, NativeFilePickerSAFEntry entry2 )
+		{
+			long lastModified1 = entry1.lastModified(), lastModified2 = entry2.lastModified();
+			return ( lastModified1 < lastModified2 ) ? -1 : ( ( lastModified1 == lastModified2 ) ? 0 : 1 );
+		}
+	};
+
+	public static final Comparator<NativeFilePickerSAFEntry> SORT_BY_SIZE = new Comparator<NativeFilePickerSAFEntry>()
+	{
+		@Override
+		public int compare( NativeFilePickerSAFEntry entry1, NativeFilePickerSAFEntry entry2 )
+		{
+			long size1 = entry1.length(), size2 = entry2.length();
+			return ( size1 < size2 ) ? -1 : ( ( size1 == size2 ) ? 0 : 1 );
+		}
+	};
+
 	private Context mContext;
 	private Uri mUri;
+	private volatile Metadata mMetadata; // Fetched lazily, null until then
+	private String mCacheKey; // Key of this entry in NativeFilePickerSAFEntryCache, null if the entry's path isn't known
 
 	public static NativeFilePickerSAFEntry fromTreeUri( Context context, Uri uri )
 	{
-		uri = DocumentsContract.buildDocumentUriUsingTree( uri, DocumentsContract.getTreeDocumentId( uri ) );
+		final String treeDocumentId = DocumentsContract.getTreeDocumentId( uri );
+		uri = DocumentsContract.buildDocumentUriUsingTree( uri, treeDocumentId );
 		if( uri == null )
 			return null;
 
-		return new NativeFilePickerSAFEntry( context, uri );
+		final String cacheKey = DocumentsContract.buildTreeDocumentUri( uri.getAuthority(), treeDocumentId ).toString();
+		return new NativeFilePickerSAFEntry( context, uri, null, cacheKey );
 	}
 
 	public NativeFilePickerSAFEntry( Context context, Uri uri )
@@ -55,8 +159,30 @@ public class NativeFilePickerSAFEntry
 		mUri = uri;
 	}
 
+	private NativeFilePickerSAFEntry( Context context, Uri uri, Metadata metadata, String cacheKey )
+	{
+		mContext = context;
+		mUri = uri;
+		mMetadata = metadata;
+		mCacheKey = cacheKey;
+	}
+
 	public NativeFilePickerSAFEntry createFile( String mimeType, String displayName )
 	{
+		return createDocument( mimeType, displayName );
+	}
+
+	public NativeFilePickerSAFEntry createDirectory( String displayName )
+	{
+		return createDocument( DocumentsContract.Document.MIME_TYPE_DIR, displayName );
+	}
+
+	// The created document's path isn't cached since the document provider may change its name (e.g. if the name is already taken)
+	private NativeFilePickerSAFEntry createDocument( String mimeType, String displayName )
+	{
+		if( mCacheKey != null )
+			NativeFilePickerSAFEntryCache.invalidate( NativeFilePickerSAFEntryCache.getChildKey( mCacheKey, displayName ) );
+
 		try
 		{
 			final Uri result = DocumentsContract.createDocument( mContext.getContentResolver(), mUri, mimeType, displayName );
@@ -69,18 +195,47 @@ public class NativeFilePickerSAFEntry
 		}
 	}
 
-	public NativeFilePickerSAFEntry createDirectory( String displayName )
+	// Resolves a path relative to this directory (e.g. "saves/slot3/data.bin"), returns null if it doesn't exist. Resolved paths are cached
+	// for entries whose paths are known (i.e. entries that descend from fromTreeUri), so resolving them again doesn't query the document provider.
+	// Since the cache isn't aware of the changes made by other apps, call exists() to verify that the returned document still exists
+	public NativeFilePickerSAFEntry findFile( String relativePath )
 	{
-		try
+		NativeFilePickerSAFEntry entry = this;
+		for( String name : relativePath.split( "/" ) )
 		{
-			final Uri result = DocumentsContract.createDocument( mContext.getContentResolver(), mUri, DocumentsContract.Document.MIME_TYPE_DIR, displayName );
-			return ( result != null ) ? new NativeFilePickerSAFEntry( mContext, result ) : null;
+			if( name.length() == 0 || name.equals( "." ) )
+				continue;
+
+			entry = entry.findChild( name );
+			if( entry == null )
+				return null;
 		}
-		catch( Exception e )
+
+		return entry;
+	}
+
+	private NativeFilePickerSAFEntry findChild( String name )
+	{
+		if( mCacheKey != null )
 		{
-			Log.e( "Unity", "Exception:", e );
-			return null;
+			final String childCacheKey = NativeFilePickerSAFEntryCache.getChildKey( mCacheKey, name );
+			final NativeFilePickerSAFEntryCache.Entry cachedChild = NativeFilePickerSAFEntryCache.get( childCacheKey );
+			if( cachedChild != null )
+				return new NativeFilePickerSAFEntry( mContext, cachedChild.uri, cachedChild.metadata, childCacheKey );
+		}
+
+		// Listing the children caches all of them, so their siblings can be resolved without querying the document provider, as well
+		ArrayList<NativeFilePickerSAFEntry> children = listFiles();
+		if( children != null )
+		{
+			for( NativeFilePickerSAFEntry child : children )
+			{
+				if( name.equals( child.getName() ) )
+					return child;
+			}
 		}
+
+		return null;
 	}
 
 	public Uri getUri()
@@ -88,9 +243,68 @@ public class NativeFilePickerSAFEntry
 		return mUri;
 	}
 
+	// Metadata is fetched once and then reused by the getters, call refresh() to fetch the latest metadata. If the query fails, empty
+	// metadata is returned and the query is retried on the next call
+	public Metadata getMetadata()
+	{
+		Metadata metadata = mMetadata;
+		if( metadata == null )
+		{
+			refresh();
+			metadata = mMetadata;
+		}
+
+		return ( metadata != null ) ? metadata : Metadata.EMPTY;
+	}
+
+	// Returns false if the document doesn't exist (or can't be queried)
+	public boolean refresh()
+	{
+		final ContentResolver resolver = mContext.getContentResolver();
+		Cursor c = null;
+		try
+		{
+			c = resolver.query( mUri, METADATA_PROJECTION, null, null, null );
+			if( c != null && c.moveToFirst() )
+			{
+				mMetadata = Metadata.fromCursor( c );
+				if( mCacheKey != null )
+					NativeFilePickerSAFEntryCache.put( mCacheKey, mUri, mMetadata );
+
+				return true;
+			}
+
+			mMetadata = Metadata.EMPTY;
+			if( mCacheKey != null )
+				NativeFilePickerSAFEntryCache.invalidate( mCacheKey );
+
+			return false;
+		}
+		catch( Exception e )
+		{
+			Log.w( TAG, "Failed query: " + e );
+
+			// Failure may be temporary (e.g. the provider's process has died), so the metadata is fetched again on next access
+			mMetadata = null;
+			return false;
+		}
+		finally
+		{
+			try
+			{
+				if( c != null )
+					c.close();
+			}
+			catch( Exception e )
+			{
+				Log.e( TAG, "Exception:", e );
+			}
+		}
+	}
+
 	public String getName()
 	{
-		return queryForString( DocumentsContract.Document.COLUMN_DISPLAY_NAME, null );
+		return getMetadata().name;
 	}
 
 	public String getType()
@@ -126,12 +340,12 @@ public class NativeFilePickerSAFEntry
 
 	public long lastModified()
 	{
-		return queryForLong( DocumentsContract.Document.COLUMN_LAST_MODIFIED, 0 );
+		return getMetadata().lastModified;
 	}
 
 	public long length()
 	{
-		return queryForLong( DocumentsContract.Document.COLUMN_SIZE, 0 );
+		return getMetadata().size;
 	}
 
 	public boolean canRead()
@@ -158,8 +372,9 @@ public class NativeFilePickerSAFEntry
 		{
 			return false;
 		}
-		final String type = getRawType();
-		final int flags = queryForInt( DocumentsContract.Document.COLUMN_FLAGS, 0 );
+		final Metadata metadata = getMetadata();
+		final String type = metadata.rawType;
+		final int flags = metadata.flags;
 		// Ignore documents without MIME
 		if( TextUtils.isEmpty( type ) )
 		{
@@ -189,7 +404,14 @@ public class NativeFilePickerSAFEntry
 	{
 		try
 		{
-			return DocumentsContract.deleteDocument( mContext.getContentResolver(), mUri );
+			if( DocumentsContract.deleteDocument( mContext.getContentResolver(), mUri ) )
+			{
+				mMetadata = Metadata.EMPTY;
+				if( mCacheKey != null )
+					NativeFilePickerSAFEntryCache.invalidate( mCacheKey );
+
+				return true;
+			}
 		}
 		catch( Exception e )
 		{
@@ -199,57 +421,55 @@ public class NativeFilePickerSAFEntry
 		return false;
 	}
 
+	// Also refreshes the metadata
 	public boolean exists()
 	{
-		final ContentResolver resolver = mContext.getContentResolver();
-		Cursor c = null;
-		try
-		{
-			c = resolver.query( mUri, new String[] {
-					DocumentsContract.Document.COLUMN_DOCUMENT_ID }, null, null, null );
-			return c.getCount() > 0;
-		}
-		catch( Exception e )
-		{
-			Log.w( TAG, "Failed query: " + e );
-			return false;
-		}
-		finally
-		{
-			try
-			{
-				if( c != null )
-					c.close();
-			}
-			catch( Exception e )
-			{
-				Log.e( TAG, "Exception:", e );
-			}
-		}
+		return refresh();
 	}
 
+	// Children are returned with their metadata, so calling their getters doesn't query the document provider again. Children are also cached
+	// by their paths if this entry's path is known. Returns null if the children couldn't be queried
 	public ArrayList<NativeFilePickerSAFEntry> listFiles()
+	{
+		return listFiles( null, null );
+	}
+
+	// Filter and comparator are both optional. Children are sorted in memory since document providers aren't required to honor sort orders
+	public ArrayList<NativeFilePickerSAFEntry> listFiles( Filter filter, Comparator<NativeFilePickerSAFEntry> comparator )
 	{
 		final ContentResolver resolver = mContext.getContentResolver();
 		final Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree( mUri,
 				DocumentsContract.getDocumentId( mUri ) );
 		final ArrayList<NativeFilePickerSAFEntry> results = new ArrayList<NativeFilePickerSAFEntry>();
+		final HashSet<String> cachedNames = ( mCacheKey != null ) ? new HashSet<String>() : null;
 		Cursor c = null;
 		try
 		{
-			c = resolver.query( childrenUri, new String[] {
-					DocumentsContract.Document.COLUMN_DOCUMENT_ID }, null, null, null );
+			c = resolver.query( childrenUri, METADATA_PROJECTION, null, null, null );
 			while( c.moveToNext() )
 			{
 				final String documentId = c.getString( 0 );
 				final Uri documentUri = DocumentsContract.buildDocumentUriUsingTree( mUri,
 						documentId );
-				results.add( new NativeFilePickerSAFEntry( mContext, documentUri ) );
+				final Metadata metadata = Metadata.fromCursor( c );
+
+				// Some document providers allow multiple documents with the same name in a folder, only the first one is reachable by its path
+				String cacheKey = null;
+				if( cachedNames != null && metadata.name != null && cachedNames.add( metadata.name ) )
+				{
+					cacheKey = NativeFilePickerSAFEntryCache.getChildKey( mCacheKey, metadata.name );
+					NativeFilePickerSAFEntryCache.put( cacheKey, documentUri, metadata );
+				}
+
+				final NativeFilePickerSAFEntry entry = new NativeFilePickerSAFEntry( mContext, documentUri, metadata, cacheKey );
+				if( filter == null || filter.accept( entry ) )
+					results.add( entry );
 			}
 		}
 		catch( Exception e )
 		{
 			Log.w( "Unity", "Failed query: " + e );
+			return null;
 		}
 		finally
 		{
@@ -264,16 +484,49 @@ public class NativeFilePickerSAFEntry
 			}
 		}
 
+		if( comparator != null )
+			Collections.sort( results, comparator );
+
 		return results;
 	}
 
+	// Accepts files whose MIME types match the given MIME type, which may contain wildcards (e.g. "image/*")
+	public static Filter mimeTypeFilter( final String mimeType )
+	{
+		final int wildcardIndex = mimeType.indexOf( '*' );
+		final String prefix = ( wildcardIndex >= 0 ) ? mimeType.substring( 0, wildcardIndex ).toLowerCase( Locale.ENGLISH ) : null;
+
+		return new Filter()
+		{
+			@Override
+			public boolean accept( NativeFilePickerSAFEntry entry )
+			{
+				String type = entry.getType();
+				if( type == null || !entry.isFile() )
+					return false;
+
+				return ( prefix != null ) ? type.toLowerCase( Locale.ENGLISH ).startsWith( prefix ) : type.equalsIgnoreCase( mimeType );
+			}
+		};
+	}
+
 	public String renameTo( String displayName )
 	{
 		try
 		{
 			final Uri result = DocumentsContract.renameDocument( mContext.getContentResolver(), mUri, displayName );
 			if( result != null )
+			{
+				// Document provider may change the new name, so the renamed entry's path is no longer tracked
+				if( mCacheKey != null )
+				{
+					NativeFilePickerSAFEntryCache.invalidate( mCacheKey );
+					mCacheKey = null;
+				}
+
 				mUri = result;
+				mMetadata = null;
+			}
 		}
 		catch( Exception e )
 		{
@@ -285,73 +538,6 @@ public class NativeFilePickerSAFEntry
 
 	private String getRawType()
 	{
-		return queryForString( DocumentsContract.Document.COLUMN_MIME_TYPE, null );
-	}
-
-	private String queryForString( String column, String defaultValue )
-	{
-		final ContentResolver resolver = mContext.getContentResolver();
-		Cursor c = null;
-		try
-		{
-			c = resolver.query( mUri, new String[] { column }, null, null, null );
-			if( c.moveToFirst() && !c.isNull( 0 ) )
-				return c.getString( 0 );
-
-			return defaultValue;
-		}
-		catch( Exception e )
-		{
-			Log.w( TAG, "Failed query: " + e );
-			return defaultValue;
-		}
-		finally
-		{
-			try
-			{
-				if( c != null )
-					c.close();
-			}
-			catch( Exception e )
-			{
-				Log.e( TAG, "Exception:", e );
-			}
-		}
-	}
-
-	private int queryForInt( String column, int defaultValue )
-	{
-		return (int) queryForLong( column, defaultValue );
-	}
-
-	private long queryForLong( String column, long defaultValue )
-	{
-		final ContentResolver resolver = mContext.getContentResolver();
-		Cursor c = null;
-		try
-		{
-			c = resolver.query( mUri, new String[] { column }, null, null, null );
-			if( c.moveToFirst() && !c.isNull( 0 ) )
-				return c.getLong( 0 );
-
-			return defaultValue;
-		}
-		catch( Exception e )
-		{
-			Log.w( TAG, "Failed query: " + e );
-			return defaultValue;
-		}
-		finally
-		{
-			try
-			{
-				if( c != null )
-					c.close();
-			}
-			catch( Exception e )
-			{
-				Log.e( TAG, "Exception:", e );
-			}
-		}
+		return getMetadata().rawType;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.yasirkula.unity;
+
+import android.net.Uri;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Remembers the document URIs and metadata of the SAF entries whose paths (relative to a picked folder) are known, so that resolving the same
+// path again doesn't query the document provider. Keys are in "treeUri/relative/path" format. Least recently used entries are evicted when the
+// cache is full. Entries are invalidated when they're created, deleted or renamed via NativeFilePickerSAFEntry; changes made by other apps aren't
+// detected until the entry is refreshed
+public class NativeFilePickerSAFEntryCache
+{
+	private static final int MAX_ENTRIES = 512;
+
+	public static class Entry
+	{
+		public final Uri uri;
+		public final NativeFilePickerSAFEntry.Metadata metadata;
+
+		private Entry( Uri uri, NativeFilePickerSAFEntry.Metadata metadata )
+		{
+			this.uri = uri;
+			this.metadata = metadata;
+		}
+	}
+
+	private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true ) // Iteration order: least recently used first
+	{
+		@Override
+		protected boolean removeEldestEntry( Map.Entry<String, NativeFilePickerSAFEntryCache.Entry> eldest )
+		{
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	public static String getChildKey( String parentKey, String name )
+	{
+		return parentKey + "/" + name;
+	}
+
+	// Returns null if the entry isn't cached
+	public static synchronized Entry get( String key )
+	{
+		return entries.get( key );
+	}
+
+	public static synchronized void put( String key, Uri uri, NativeFilePickerSAFEntry.Metadata metadata )
+	{
+		entries.put( key, new Entry( uri, metadata ) );
+	}
+
+	// Also invalidates the entry's descendants since their paths are no longer valid if a directory is deleted or renamed
+	public static synchronized void invalidate( String key )
+	{
+		entries.remove( key );
+
+		String descendantsPrefix = key + "/";
+		for( Iterator<String> iterator = entries.keySet().iterator(); iterator.hasNext(); )
+		{
+			if( iterator.next().startsWith( descendantsPrefix ) )
+				iterator.remove();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,181 @@
+package com.yasirkula.unity;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.storage.StorageManager;
+import android.os.storage.StorageVolume;
+import android.util.Log;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Locale;
+
+// Maps the UUIDs of the storage volumes (SD cards, USB drives etc.) to their mount paths. Secondary storage document IDs of
+// com.android.externalstorage.documents are in "<volume UUID>:<relative path>" format, so their paths are resolved with a single lookup.
+// The index is built from StorageManager on first use and rebuilt after a storage volume is mounted or unmounted
+public class NativeFilePickerStorageVolumes
+{
+	private static HashMap<String, String> volumePaths; // null if the index must be (re)built
+	private static int indexVersion; // Incremented when storage volumes change, so that an index that was being built at that time is discarded
+	private static BroadcastReceiver volumeChangeReceiver;
+
+	// Returns null if the volume's path couldn't be determined. If the volume isn't in the index, may wait for NativeFilePickerDeviceCapabilities'
+	// probe, so it mustn't be called on the main thread
+	public static String getVolumePath( Context context, String uuid )
+	{
+		registerVolumeChangeReceiver( context );
+
+		HashMap<String, String> index;
+		int version;
+		synchronized( NativeFilePickerStorageVolumes.class )
+		{
+			index = volumePaths;
+			version = indexVersion;
+		}
+
+		if( index == null )
+		{
+			index = buildIndex( context );
+			synchronized( NativeFilePickerStorageVolumes.class )
+			{
+				if( version == indexVersion )
+					volumePaths = index;
+			}
+		}
+
+		String path = index.get( uuid.toUpperCase( Locale.ENGLISH ) );
+		return ( path != null ) ? path : findProbedVolumePath( context, uuid );
+	}
+
+	// Secondary storage roots are usually named after their volumes' UUIDs (e.g. /storage/1A2B-3C4D), they cover the volumes that
+	// StorageManager didn't report. The roots may be outdated, so only the ones that still exist are returned
+	private static String findProbedVolumePath( Context context, String uuid )
+	{
+		NativeFilePickerDeviceCapabilities.probeAsync( context, false );
+		String[] storageRoots = NativeFilePickerDeviceCapabilities.getSecondaryStorageRoots();
+		if( storageRoots != null )
+		{
+			for( String storageRoot : storageRoots )
+			{
+				File root = new File( storageRoot );
+				if( root.getName().equalsIgnoreCase( uuid ) && root.isDirectory() )
+					return storageRoot;
+			}
+		}
+
+		return null;
+	}
+
+	// Storage volume changes also invalidate NativeFilePickerPathCache and NativeFilePickerDeviceCapabilities' storage roots.
+	// Returns false if the receiver couldn't be registered
+	public static synchronized boolean registerVolumeChangeReceiver( Context context )
+	{
+		if( volumeChangeReceiver != null )
+			return true;
+
+		IntentFilter filter = new IntentFilter();
+		filter.addAction( Intent.ACTION_MEDIA_MOUNTED );
+		filter.addAction( Intent.ACTION_MEDIA_UNMOUNTED );
+		filter.addAction( Intent.ACTION_MEDIA_EJECT );
+		filter.addAction( Intent.ACTION_MEDIA_REMOVED );
+		filter.addAction( Intent.ACTION_MEDIA_BAD_REMOVAL );
+		filter.addDataScheme( "file" ); // Media broadcasts aren't received without it
+
+		BroadcastReceiver receiver = new BroadcastReceiver()
+		{
+			@Override
+			public void onReceive( Context context, Intent intent )
+			{
+				synchronized( NativeFilePickerStorageVolumes.class )
+				{
+					volumePaths = null;
+					indexVersion++;
+				}
+
+				NativeFilePickerPathCache.clear();
+				NativeFilePickerDeviceCapabilities.probeAsync( context, true );
+			}
+		};
+
+		try
+		{
+			context.getApplicationContext().registerReceiver( receiver, filter );
+			volumeChangeReceiver = receiver;
+			return true;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return false;
+		}
+	}
+
+	private static HashMap<String, String> buildIndex( Context context )
+	{
+		HashMap<String, String> result = new HashMap<String, String>();
+
+		try
+		{
+			StorageManager storageManager = (StorageManager) context.getSystemService( Context.STORAGE_SERVICE );
+			if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.N )
+			{
+				for( StorageVolume volume : storageManager.getStorageVolumes() )
+					addVolume( result, volume.getUuid(), getMountPath( volume ) );
+			}
+			else
+			{
+				// StorageManager.getVolumeList is hidden but available since API 14
+				Object volumes = StorageManager.class.getMethod( "getVolumeList" ).invoke( storageManager );
+				for( int i = 0; i < Array.getLength( volumes ); i++ )
+				{
+					Object volume = Array.get( volumes, i );
+					Class<?> volumeClass = volume.getClass();
+					addVolume( result, (String) volumeClass.getMethod( "getUuid" ).invoke( volume ), (String) volumeClass.getMethod( "getPath" ).invoke( volume ) );
+				}
+			}
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+		}
+
+		return result;
+	}
+
+	private static void addVolume( HashMap<String, String> index, String uuid, String path )
+	{
+		if( uuid == null || uuid.length() == 0 ) // Primary storage doesn't have a UUID, its document IDs start with "primary"
+			return;
+
+		// Removable volumes are mounted at /storage/<UUID> if their paths aren't known
+		if( path == null || path.length() == 0 )
+			path = "/storage/" + uuid;
+
+		index.put( uuid.toUpperCase( Locale.ENGLISH ), path );
+	}
+
+	private static String getMountPath( StorageVolume volume )
+	{
+		if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.R )
+		{
+			File directory = volume.getDirectory();
+			return ( directory != null ) ? directory.getAbsolutePath() : null;
+		}
+
+		try
+		{
+			// StorageVolume.getPath is hidden on these Android versions
+			Method getPathMethod = StorageVolume.class.getMethod( "getPath" );
+			return (String) getPathMethod.invoke( volume );
+		}
+		catch( Exception e )
+		{
+			return null;
+		}
+	}
+}
\ No newline at end of file
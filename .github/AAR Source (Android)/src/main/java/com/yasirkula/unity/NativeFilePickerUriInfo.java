@@ -0,0 +1,118 @@
+package com.yasirkula.unity;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.webkit.MimeTypeMap;
+
+import java.io.File;
+import java.util.Locale;
+
+// Metadata of a picked URI. It's filled while the URI's path is being resolved whenever possible, so that the same URI
+// isn't queried again if the file needs to be copied
+public class NativeFilePickerUriInfo
+{
+	// Columns supported by all DocumentsProviders
+	private static final String[] DOCUMENT_METADATA_PROJECTION = new String[] { OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE,
+			DocumentsContract.Document.COLUMN_MIME_TYPE, DocumentsContract.Document.COLUMN_LAST_MODIFIED };
+
+	// Columns supported by MediaStore, FileProvider ignores the unknown columns
+	public static final String[] PATH_AND_METADATA_PROJECTION = new String[] { MediaStore.MediaColumns.DATA, OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE,
+			MediaStore.MediaColumns.MIME_TYPE, MediaStore.MediaColumns.DATE_MODIFIED };
+
+	// Columns supported by DocumentsProviders (most of them don't have a path column, it's returned as null in that case)
+	public static final String[] PATH_AND_DOCUMENT_METADATA_PROJECTION = new String[] { MediaStore.MediaColumns.DATA, OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE,
+			DocumentsContract.Document.COLUMN_MIME_TYPE, DocumentsContract.Document.COLUMN_LAST_MODIFIED };
+
+	public final Uri uri;
+	public String path; // Accessible path of the imported file, it's either the original file or its copy
+	public String displayName, mimeType;
+	public long size = -1L, lastModified = 0L; // Unknown values are -1 and 0 respectively
+	public boolean hasMetadata;
+	public String digest; // SHA-256 digest of the imported file in hex format, null if it wasn't computed
+
+	public NativeFilePickerUriInfo( Uri uri )
+	{
+		this.uri = uri;
+	}
+
+	public void queryMetadata( Context context )
+	{
+		if( hasMetadata )
+			return;
+
+		// Credit: https://developer.android.com/training/secure-file-sharing/retrieve-info.html#RetrieveFileInfo
+		String[] projection = null; // We can't assume that arbitrary content providers support any specific columns
+		if( Build.VERSION.SDK_INT >= 19 && DocumentsContract.isDocumentUri( context, uri ) )
+			projection = DOCUMENT_METADATA_PROJECTION;
+
+		Cursor cursor = null;
+		try
+		{
+			cursor = context.getContentResolver().query( uri, projection, null, null, null );
+			if( cursor != null && cursor.moveToFirst() )
+				readMetadata( cursor );
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+		}
+		finally
+		{
+			if( cursor != null )
+				cursor.close();
+		}
+
+		hasMetadata = true;
+	}
+
+	// Fills the missing metadata from the imported file without querying the content provider
+	public void setPath( String path )
+	{
+		File file = new File( path );
+
+		this.path = path;
+		size = file.length();
+
+		if( displayName == null || displayName.length() == 0 )
+			displayName = file.getName();
+
+		if( mimeType == null || mimeType.length() == 0 )
+		{
+			int extensionStart = displayName.lastIndexOf( '.' );
+			if( extensionStart >= 0 && extensionStart < displayName.length() - 1 )
+				mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension( displayName.substring( extensionStart + 1 ).toLowerCase( Locale.ENGLISH ) );
+		}
+	}
+
+	// Reads the metadata columns that exist in the cursor's current row
+	public void readMetadata( Cursor cursor )
+	{
+		int column = cursor.getColumnIndex( OpenableColumns.DISPLAY_NAME );
+		if( column >= 0 && !cursor.isNull( column ) )
+			displayName = cursor.getString( column );
+
+		column = cursor.getColumnIndex( OpenableColumns.SIZE );
+		if( column >= 0 && !cursor.isNull( column ) )
+			size = cursor.getLong( column );
+
+		column = cursor.getColumnIndex( DocumentsContract.Document.COLUMN_MIME_TYPE );
+		if( column >= 0 && !cursor.isNull( column ) )
+			mimeType = cursor.getString( column );
+
+		column = cursor.getColumnIndex( DocumentsContract.Document.COLUMN_LAST_MODIFIED );
+		if( column >= 0 && !cursor.isNull( column ) )
+			lastModified = cursor.getLong( column );
+		else if( ( column = cursor.getColumnIndex( MediaStore.MediaColumns.DATE_MODIFIED ) ) >= 0 && !cursor.isNull( column ) )
+			lastModified = cursor.getLong( column ) * 1000L; // MediaStore stores the date in seconds
+
+		// If the last modified date is missing (e.g. the provider doesn't support the queried column), queryMetadata queries the provider's
+		// own columns later on. Otherwise, the import cache couldn't be used for this file
+		hasMetadata = lastModified > 0L;
+	}
+}
\ No newline at end of file
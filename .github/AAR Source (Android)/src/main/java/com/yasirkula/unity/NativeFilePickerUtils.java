@@ -10,71 +10,24 @@ import android.provider.DocumentsContract;
 import android.provider.MediaStore;
 import android.util.Log;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
 
 public class NativeFilePickerUtils
 {
-	private static String secondaryStoragePath = null;
-	private static int isXiaomiOrMIUI = 0; // 1: true, -1: false
-
+	// Doesn't block the calling thread, see NativeFilePickerDeviceCapabilities
 	public static boolean IsXiaomiOrMIUI()
 	{
-		if( isXiaomiOrMIUI > 0 )
-			return true;
-		else if( isXiaomiOrMIUI < 0 )
-			return false;
-
-		if( "xiaomi".equalsIgnoreCase( Build.MANUFACTURER ) )
-		{
-			isXiaomiOrMIUI = 1;
-			return true;
-		}
-
-		// Check if device is using MIUI
-		// Credit: https://gist.github.com/Muyangmin/e8ec1002c930d8df3df46b306d03315d
-		String line;
-		BufferedReader inputStream = null;
-		try
-		{
-			Process process = Runtime.getRuntime().exec( "getprop ro.miui.ui.version.name" );
-			inputStream = new BufferedReader( new InputStreamReader( process.getInputStream() ), 1024 );
-			line = inputStream.readLine();
+		return NativeFilePickerDeviceCapabilities.isXiaomiOrMIUI();
+	}
 
-			if( line != null && line.length() > 0 )
-			{
-				isXiaomiOrMIUI = 1;
-				return true;
-			}
-			else
-			{
-				isXiaomiOrMIUI = -1;
-				return false;
-			}
-		}
-		catch( Exception e )
-		{
-			isXiaomiOrMIUI = -1;
-			return false;
-		}
-		finally
-		{
-			if( inputStream != null )
-			{
-				try
-				{
-					inputStream.close();
-				}
-				catch( Exception e )
-				{
-				}
-			}
-		}
+	public static String GetPathFromURI( Context context, Uri uri )
+	{
+		return GetPathFromURI( context, uri, null );
 	}
 
+	// If uriInfo isn't null and the picked URI itself is queried for its path, uriInfo's metadata is fetched in the same query
 	// Credit: https://stackoverflow.com/a/36714242/2373034
-	public static String GetPathFromURI( Context context, Uri uri )
+	public static String GetPathFromURI( Context context, Uri uri, NativeFilePickerUriInfo uriInfo )
 	{
 		if( uri == null )
 			return null;
@@ -96,7 +49,7 @@ public class NativeFilePickerUtils
 					else if( "raw".equalsIgnoreCase( split[0] ) ) // https://stackoverflow.com/a/51874578/2373034
 						return split[1];
 
-					return GetSecondaryStoragePathFor( split[1] );
+					return GetSecondaryStoragePathFor( context, split[0], split[1] );
 				}
 				else if( "com.android.providers.downloads.documents".equals( uri.getAuthority() ) )
 				{
@@ -129,21 +82,42 @@ public class NativeFilePickerUtils
 
 			if( "content".equalsIgnoreCase( uri.getScheme() ) )
 			{
-				String[] projection = { MediaStore.Images.Media.DATA };
+				boolean queryMetadata = uriInfo != null && !uriInfo.hasMetadata && uri.equals( uriInfo.uri );
+				String[] projection;
+				if( !queryMetadata )
+					projection = new String[] { MediaStore.Images.Media.DATA };
+				else if( Build.VERSION.SDK_INT >= 19 && DocumentsContract.isDocumentUri( context.getApplicationContext(), uri ) )
+					projection = NativeFilePickerUriInfo.PATH_AND_DOCUMENT_METADATA_PROJECTION;
+				else
+					projection = NativeFilePickerUriInfo.PATH_AND_METADATA_PROJECTION;
+
 				Cursor cursor = null;
 
 				try
 				{
-					cursor = context.getContentResolver().query( uri, projection, selection, selectionArgs, null );
-					if( cursor != null )
+					try
+					{
+						cursor = context.getContentResolver().query( uri, projection, selection, selectionArgs, null );
+					}
+					catch( Exception e )
+					{
+						if( !queryMetadata )
+							throw e;
+
+						// Content provider doesn't support some of the metadata columns, metadata will be queried separately if needed
+						queryMetadata = false;
+						cursor = context.getContentResolver().query( uri, new String[] { MediaStore.Images.Media.DATA }, selection, selectionArgs, null );
+					}
+
+					if( cursor != null && cursor.moveToFirst() )
 					{
+						if( queryMetadata )
+							uriInfo.readMetadata( cursor );
+
 						int column_index = cursor.getColumnIndexOrThrow( MediaStore.Images.Media.DATA );
-						if( cursor.moveToFirst() )
-						{
-							String columnValue = cursor.getString( column_index );
-							if( columnValue != null && columnValue.length() > 0 )
-								return columnValue;
-						}
+						String columnValue = cursor.getString( column_index );
+						if( columnValue != null && columnValue.length() > 0 )
+							return columnValue;
 					}
 				}
 				catch( Exception e )
@@ -168,74 +142,26 @@ public class NativeFilePickerUtils
 		}
 	}
 
-	private static String GetSecondaryStoragePathFor( String localPath )
+	// Secondary storage document IDs are in "<volume UUID>:<relative path>" format
+	private static String GetSecondaryStoragePathFor( Context context, String volumeUuid, String localPath )
 	{
-		if( secondaryStoragePath == null )
+		String volumePath = NativeFilePickerStorageVolumes.getVolumePath( context, volumeUuid );
+		if( volumePath != null )
+			return volumePath + File.separator + localPath;
+
+		// Volume isn't indexed, search the secondary storage roots for the file instead. They're probed on a background thread,
+		// this function is called on the operation's thread so it can wait for them
+		NativeFilePickerDeviceCapabilities.probeAsync( context, false );
+		String[] storageRoots = NativeFilePickerDeviceCapabilities.getSecondaryStorageRoots();
+		if( storageRoots != null )
 		{
-			String primaryPath = Environment.getExternalStorageDirectory().getAbsolutePath();
-
-			// Try paths saved at system environments
-			// Credit: https://stackoverflow.com/a/32088396/2373034
-			String strSDCardPath = System.getenv( "SECONDARY_STORAGE" );
-			if( strSDCardPath == null || strSDCardPath.length() == 0 )
-				strSDCardPath = System.getenv( "EXTERNAL_SDCARD_STORAGE" );
-
-			if( strSDCardPath != null && strSDCardPath.length() > 0 )
-			{
-				if( !strSDCardPath.contains( ":" ) )
-					strSDCardPath += ":";
-
-				String[] externalPaths = strSDCardPath.split( ":" );
-				for( int i = 0; i < externalPaths.length; i++ )
-				{
-					String path = externalPaths[i];
-					if( path != null && path.length() > 0 )
-					{
-						File file = new File( path );
-						if( file.exists() && file.isDirectory() && file.canRead() && !file.getAbsolutePath().equalsIgnoreCase( primaryPath ) )
-						{
-							String absolutePath = file.getAbsolutePath() + File.separator + localPath;
-							if( new File( absolutePath ).exists() )
-							{
-								secondaryStoragePath = file.getAbsolutePath();
-								return absolutePath;
-							}
-						}
-					}
-				}
-			}
-
-			// Try most common possible paths
-			// Credit: https://gist.github.com/PauloLuan/4bcecc086095bce28e22
-			String[] possibleRoots = new String[] { "/storage", "/mnt", "/storage/removable",
-					"/removable", "/data", "/mnt/media_rw", "/mnt/sdcard0" };
-			for( String root : possibleRoots )
+			for( String storageRoot : storageRoots )
 			{
-				try
-				{
-					File fileList[] = new File( root ).listFiles();
-					for( File file : fileList )
-					{
-						if( file.exists() && file.isDirectory() && file.canRead() && !file.getAbsolutePath().equalsIgnoreCase( primaryPath ) )
-						{
-							String absolutePath = file.getAbsolutePath() + File.separator + localPath;
-							if( new File( absolutePath ).exists() )
-							{
-								secondaryStoragePath = file.getAbsolutePath();
-								return absolutePath;
-							}
-						}
-					}
-				}
-				catch( Exception e )
-				{
-				}
+				String absolutePath = storageRoot + File.separator + localPath;
+				if( new File( absolutePath ).exists() )
+					return absolutePath;
 			}
-
-			secondaryStoragePath = "_NulL_";
 		}
-		else if( !secondaryStoragePath.equals( "_NulL_" ) )
-			return secondaryStoragePath + File.separator + localPath;
 
 		return null;
 	}
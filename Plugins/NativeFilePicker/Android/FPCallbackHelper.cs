@@ -8,6 +8,7 @@ namespace NativeFilePickerNamespace
 	{
 		private bool autoDestroyWithCallback;
 		private Action mainThreadAction = null;
+		private bool hasFinalCallback;
 
 		public static FPCallbackHelper Create( bool autoDestroyWithCallback )
 		{
@@ -17,11 +18,13 @@ namespace NativeFilePickerNamespace
 			return result;
 		}
 
-		public void CallOnMainThread( Action function )
+		// Intermediate callbacks (e.g. progress updates) don't destroy the helper when autoDestroyWithCallback is enabled
+		public void CallOnMainThread( Action function, bool isFinalCallback = true )
 		{
 			lock( this )
 			{
 				mainThreadAction += function;
+				hasFinalCallback |= isFinalCallback;
 			}
 		}
 
@@ -29,6 +32,7 @@ namespace NativeFilePickerNamespace
 		{
 			if( mainThreadAction != null )
 			{
+				bool isFinalCallback = false;
 				try
 				{
 					Action temp;
@@ -36,13 +40,14 @@ namespace NativeFilePickerNamespace
 					{
 						temp = mainThreadAction;
 						mainThreadAction = null;
+						isFinalCallback = hasFinalCallback;
 					}
 
 					temp();
 				}
 				finally
 				{
-					if( autoDestroyWithCallback )
+					if( autoDestroyWithCallback && isFinalCallback )
 						Destroy( gameObject );
 				}
 			}
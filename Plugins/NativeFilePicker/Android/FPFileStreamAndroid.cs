@@ -0,0 +1,177 @@
+﻿#if UNITY_EDITOR || UNITY_ANDROID
+using System;
+using System.Collections.Generic;
+using System.IO;
+using UnityEngine;
+
+namespace NativeFilePickerNamespace
+{
+	public class FPFileStreamAndroid : Stream
+	{
+		private static AndroidJavaClass m_ajc = null;
+		private static AndroidJavaClass AJC
+		{
+			get
+			{
+				if( m_ajc == null )
+					m_ajc = new AndroidJavaClass( "com.yasirkula.unity.NativeFilePickerFileHandle" );
+
+				return m_ajc;
+			}
+		}
+
+		// Handles of the streams that were garbage collected without being disposed. Finalizer thread isn't attached to the JVM (and the finalizer may
+		// run while the domain is unloading), so these handles are closed the next time a stream is created or disposed instead
+		private static readonly List<int> leakedHandles = new List<int>();
+
+		private int handle;
+
+		public override bool CanRead { get { return handle != 0; } }
+		public override bool CanSeek { get { return handle != 0 && AJC.CallStatic<bool>( "CanSeek", handle ); } }
+		public override bool CanWrite { get { return false; } }
+
+		public override long Length
+		{
+			get
+			{
+				ThrowIfClosed();
+
+				long length = AJC.CallStatic<long>( "GetLength", handle );
+				if( length < 0L )
+					throw new NotSupportedException( "Length of the file is unknown" );
+
+				return length;
+			}
+		}
+
+		public override long Position
+		{
+			get
+			{
+				ThrowIfClosed();
+				return AJC.CallStatic<long>( "GetPosition", handle );
+			}
+			set { Seek( value, SeekOrigin.Begin ); }
+		}
+
+		public FPFileStreamAndroid( int handle )
+		{
+			this.handle = handle;
+			CloseLeakedHandles();
+		}
+
+		// Queues the native handle to be closed if the stream wasn't disposed
+		~FPFileStreamAndroid()
+		{
+			Dispose( false );
+		}
+
+		public override int Read( byte[] buffer, int offset, int count )
+		{
+			ThrowIfClosed();
+
+			if( buffer == null )
+				throw new ArgumentNullException( "buffer" );
+			if( offset < 0 || count < 0 || offset + count > buffer.Length )
+				throw new ArgumentOutOfRangeException();
+
+			byte[] data = AJC.CallStatic<byte[]>( "Read", handle, count );
+			if( data == null )
+				throw new IOException( "Couldn't read from the file, see Logcat for details" );
+
+			Buffer.BlockCopy( data, 0, buffer, offset, data.Length );
+			return data.Length;
+		}
+
+		public override long Seek( long offset, SeekOrigin origin )
+		{
+			ThrowIfClosed();
+
+			if( origin == SeekOrigin.Current )
+				offset += Position;
+			else if( origin == SeekOrigin.End )
+				offset += Length;
+
+			long position = AJC.CallStatic<long>( "Seek", handle, offset );
+			if( position < 0L )
+				throw new NotSupportedException( "This file can't be seeked" );
+
+			return position;
+		}
+
+		public override void Flush()
+		{
+		}
+
+		public override void SetLength( long value )
+		{
+			throw new NotSupportedException();
+		}
+
+		public override void Write( byte[] buffer, int offset, int count )
+		{
+			throw new NotSupportedException();
+		}
+
+		protected override void Dispose( bool disposing )
+		{
+			if( handle != 0 )
+			{
+				if( disposing )
+				{
+					try
+					{
+						AJC.CallStatic( "Close", handle );
+					}
+					catch( Exception e )
+					{
+						Debug.LogException( e );
+					}
+
+					CloseLeakedHandles();
+				}
+				else
+				{
+					lock( leakedHandles )
+						leakedHandles.Add( handle );
+				}
+
+				handle = 0;
+			}
+
+			base.Dispose( disposing );
+		}
+
+		private static void CloseLeakedHandles()
+		{
+			int[] handles;
+			lock( leakedHandles )
+			{
+				if( leakedHandles.Count == 0 )
+					return;
+
+				handles = leakedHandles.ToArray();
+				leakedHandles.Clear();
+			}
+
+			for( int i = 0; i < handles.Length; i++ )
+			{
+				try
+				{
+					AJC.CallStatic( "Close", handles[i] );
+				}
+				catch( Exception e )
+				{
+					Debug.LogException( e );
+				}
+			}
+		}
+
+		private void ThrowIfClosed()
+		{
+			if( handle == 0 )
+				throw new ObjectDisposedException( "FPFileStreamAndroid" );
+		}
+	}
+}
+#endif
\ No newline at end of file
@@ -8,57 +8,100 @@ namespace NativeFilePickerNamespace
 		private readonly NativeFilePicker.FilePickedCallback pickCallback;
 		private readonly NativeFilePicker.MultipleFilesPickedCallback pickCallbackMultiple;
 		private readonly NativeFilePicker.FilesExportedCallback exportCallback;
+		private readonly NativeFilePicker.FileStreamPickedCallback pickStreamCallback;
+		private readonly NativeFilePicker.FilePickedWithInfoCallback pickInfoCallback;
+		private readonly NativeFilePicker.MultipleFilesPickedWithInfoCallback pickInfoCallbackMultiple;
+		private readonly NativeFilePicker.FolderPickedCallback pickFolderCallback;
 
 		private readonly FPCallbackHelper callbackHelper;
 
-		public FPResultCallbackAndroid( NativeFilePicker.FilePickedCallback pickCallback, NativeFilePicker.MultipleFilesPickedCallback pickCallbackMultiple, NativeFilePicker.FilesExportedCallback exportCallback ) : base( "com.yasirkula.unity.NativeFilePickerResultReceiver" )
+		public FPResultCallbackAndroid( NativeFilePicker.FilePickedCallback pickCallback, NativeFilePicker.MultipleFilesPickedCallback pickCallbackMultiple, NativeFilePicker.FilesExportedCallback exportCallback, NativeFilePicker.FileStreamPickedCallback pickStreamCallback = null,
+			NativeFilePicker.FilePickedWithInfoCallback pickInfoCallback = null, NativeFilePicker.MultipleFilesPickedWithInfoCallback pickInfoCallbackMultiple = null, NativeFilePicker.FolderPickedCallback pickFolderCallback = null ) : base( "com.yasirkula.unity.NativeFilePickerResultReceiver" )
 		{
 			this.pickCallback = pickCallback;
 			this.pickCallbackMultiple = pickCallbackMultiple;
 			this.exportCallback = exportCallback;
+			this.pickStreamCallback = pickStreamCallback;
+			this.pickInfoCallback = pickInfoCallback;
+			this.pickInfoCallbackMultiple = pickInfoCallbackMultiple;
+			this.pickFolderCallback = pickFolderCallback;
 
 			callbackHelper = FPCallbackHelper.Create( true );
 		}
 
 		[UnityEngine.Scripting.Preserve]
-		public void OnFilePicked( string path )
+		public void OnFilePicked( string result )
 		{
-			callbackHelper.CallOnMainThread( () => pickCallback( !string.IsNullOrEmpty( path ) ? path : null ) );
+			NativeFilePicker.PickedFile[] files = ParsePickResult( result );
+			NativeFilePicker.PickedFile file = ( files != null && files.Length > 0 ) ? files[0] : null;
+
+			callbackHelper.CallOnMainThread( () =>
+			{
+				if( pickInfoCallback != null )
+					pickInfoCallback( file );
+				else
+					pickCallback( ( file != null ) ? file.Path : null );
+			} );
 		}
 
 		[UnityEngine.Scripting.Preserve]
-		public void OnMultipleFilesPicked( string paths )
+		public void OnMultipleFilesPicked( string result )
 		{
-			string[] result = null;
-			if( !string.IsNullOrEmpty( paths ) )
-			{
-				string[] pathsSplit = paths.Split( '>' );
-
-				int validPathCount = 0;
-				for( int i = 0; i < pathsSplit.Length; i++ )
-				{
-					if( !string.IsNullOrEmpty( pathsSplit[i] ) )
-						validPathCount++;
-				}
+			NativeFilePicker.PickedFile[] files = ParsePickResult( result );
+			if( files != null && files.Length == 0 )
+				files = null;
 
-				if( validPathCount == 0 )
-					pathsSplit = new string[0];
-				else if( validPathCount != pathsSplit.Length )
+			callbackHelper.CallOnMainThread( () =>
+			{
+				if( pickInfoCallbackMultiple != null )
+					pickInfoCallbackMultiple( files );
+				else
 				{
-					string[] validPaths = new string[validPathCount];
-					for( int i = 0, j = 0; i < pathsSplit.Length; i++ )
+					string[] paths = null;
+					if( files != null )
 					{
-						if( !string.IsNullOrEmpty( pathsSplit[i] ) )
-							validPaths[j++] = pathsSplit[i];
+						paths = new string[files.Length];
+						for( int i = 0; i < files.Length; i++ )
+							paths[i] = files[i].Path;
 					}
 
-					pathsSplit = validPaths;
+					pickCallbackMultiple( paths );
 				}
+			} );
+		}
 
-				result = pathsSplit;
-			}
+		[UnityEngine.Scripting.Preserve]
+		public void OnFileStreamPicked( int handle )
+		{
+			callbackHelper.CallOnMainThread( () => pickStreamCallback( ( handle != 0 ) ? new FPFileStreamAndroid( handle ) : null ) );
+		}
 
-			callbackHelper.CallOnMainThread( () => pickCallbackMultiple( ( result != null && result.Length > 0 ) ? result : null ) );
+		[UnityEngine.Scripting.Preserve]
+		public void OnFolderPicked( string path )
+		{
+			callbackHelper.CallOnMainThread( () => pickFolderCallback( !string.IsNullOrEmpty( path ) ? path : null ) );
+		}
+
+		[UnityEngine.Scripting.Preserve]
+		public void OnImportProgressChanged( long processedBytes, long totalBytes, int processedFiles, int totalFiles, long bytesPerSecond, long remainingMillis )
+		{
+			NativeFilePicker.TransferProgress progress = new NativeFilePicker.TransferProgress( processedBytes, totalBytes, processedFiles, totalFiles, bytesPerSecond, remainingMillis );
+			callbackHelper.CallOnMainThread( () =>
+			{
+				if( NativeFilePicker.ImportProgressChanged != null )
+					NativeFilePicker.ImportProgressChanged( progress );
+			}, false );
+		}
+
+		[UnityEngine.Scripting.Preserve]
+		public void OnExportProgressChanged( long processedBytes, long totalBytes, int processedFiles, int totalFiles, long bytesPerSecond, long remainingMillis )
+		{
+			NativeFilePicker.TransferProgress progress = new NativeFilePicker.TransferProgress( processedBytes, totalBytes, processedFiles, totalFiles, bytesPerSecond, remainingMillis );
+			callbackHelper.CallOnMainThread( () =>
+			{
+				if( NativeFilePicker.ExportProgressChanged != null )
+					NativeFilePicker.ExportProgressChanged( progress );
+			}, false );
 		}
 
 		[UnityEngine.Scripting.Preserve]
@@ -66,6 +109,44 @@ namespace NativeFilePickerNamespace
 		{
 			callbackHelper.CallOnMainThread( () => exportCallback( result ) );
 		}
+
+		// Format: every token is written as "<length>:<value>". The first two tokens are the number of fields per file and the number of files.
+		// Then, each file's fields follow in this order: path, original filename, size, MIME type (empty if unknown), SHA-256 digest (empty if it wasn't computed)
+		private static NativeFilePicker.PickedFile[] ParsePickResult( string result )
+		{
+			if( string.IsNullOrEmpty( result ) )
+				return null;
+
+			int index = 0;
+			int fieldCount = int.Parse( ReadPickResultToken( result, ref index ) );
+			NativeFilePicker.PickedFile[] files = new NativeFilePicker.PickedFile[int.Parse( ReadPickResultToken( result, ref index ) )];
+			for( int i = 0; i < files.Length; i++ )
+			{
+				string path = ReadPickResultToken( result, ref index );
+				string originalName = ReadPickResultToken( result, ref index );
+				long size = long.Parse( ReadPickResultToken( result, ref index ) );
+				string mimeType = ReadPickResultToken( result, ref index );
+				string digest = ( fieldCount >= 5 ) ? ReadPickResultToken( result, ref index ) : null;
+
+				// Skip the fields that were added in newer versions of the native plugin
+				for( int j = 5; j < fieldCount; j++ )
+					ReadPickResultToken( result, ref index );
+
+				files[i] = new NativeFilePicker.PickedFile( path, originalName, size, !string.IsNullOrEmpty( mimeType ) ? mimeType : null, !string.IsNullOrEmpty( digest ) ? digest : null );
+			}
+
+			return files;
+		}
+
+		private static string ReadPickResultToken( string result, ref int index )
+		{
+			int separatorIndex = result.IndexOf( ':', index );
+			int length = int.Parse( result.Substring( index, separatorIndex - index ) );
+
+			string token = result.Substring( separatorIndex + 1, length );
+			index = separatorIndex + 1 + length;
+			return token;
+		}
 	}
 }
 #endif
\ No newline at end of file
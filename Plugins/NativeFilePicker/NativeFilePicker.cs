@@ -11,9 +11,114 @@ public static class NativeFilePicker
 	public delegate void PermissionCallback( Permission permission );
 	public delegate void FilePickedCallback( string path );
 	public delegate void MultipleFilesPickedCallback( string[] paths );
+	public delegate void FilePickedWithInfoCallback( PickedFile file );
+	public delegate void MultipleFilesPickedWithInfoCallback( PickedFile[] files );
+	public delegate void FileStreamPickedCallback( Stream stream );
+	public delegate void FolderPickedCallback( string path );
 	public delegate void FilesExportedCallback( bool success );
+	public delegate void TransferProgressCallback( TransferProgress progress );
 
 	public enum Permission { Denied = 0, Granted = 1, ShouldAsk = 2 };
+	public enum ExportConflictPolicy { Rename = 0, Overwrite = 1, SkipIfIdentical = 2 };
+
+	public class PickedFile
+	{
+		public readonly string Path; // Path of the picked file, it may be a copy of the original file
+		public readonly string OriginalName; // Filename of the original file
+		public readonly long Size;
+		public readonly string MimeType; // null if unknown
+		public readonly string Digest; // SHA-256 digest of the file in lowercase hex format, null if ComputeFileDigests is disabled or the digest couldn't be computed (Android only)
+
+		public PickedFile( string path, string originalName, long size, string mimeType, string digest = null )
+		{
+			Path = path;
+			OriginalName = originalName;
+			Size = size;
+			MimeType = mimeType;
+			Digest = digest;
+		}
+
+		public PickedFile( string path ) : this( path, System.IO.Path.GetFileName( path ), new FileInfo( path ).Length, null )
+		{
+		}
+
+		public override string ToString()
+		{
+			return Path;
+		}
+	}
+
+	public readonly struct TransferProgress
+	{
+		public readonly long ProcessedBytes;
+		public readonly long TotalBytes; // 0 until the sizes of the files are determined, grows while copying files whose sizes weren't known beforehand
+		public readonly int ProcessedFiles;
+		public readonly int TotalFiles; // Grows while a picked folder is traversed
+		public readonly long BytesPerSecond; // Smoothed transfer speed, -1 until it's estimated. It decays towards 0 if the transfer is stalled
+		public readonly long RemainingMilliseconds; // -1 if it can't be estimated
+
+		public float Progress { get { return ( TotalBytes > 0L ) ? Mathf.Clamp01( (float) ProcessedBytes / TotalBytes ) : -1f; } } // -1 if unknown
+
+		public TransferProgress( long processedBytes, long totalBytes, int processedFiles, int totalFiles, long bytesPerSecond, long remainingMilliseconds )
+		{
+			ProcessedBytes = processedBytes;
+			TotalBytes = totalBytes;
+			ProcessedFiles = processedFiles;
+			TotalFiles = totalFiles;
+			BytesPerSecond = bytesPerSecond;
+			RemainingMilliseconds = remainingMilliseconds;
+		}
+	}
+
+	// Invoked periodically while the picked files (or folder) are copied to the app's cache (Android only)
+	public static TransferProgressCallback ImportProgressChanged;
+
+	// Invoked periodically while the files are written to the selected location (Android only)
+	public static TransferProgressCallback ExportProgressChanged;
+
+	// When enabled, SHA-256 digests of the picked files are returned via PickedFile.Digest. Copied files are hashed while they're copied (Android only)
+	private static bool m_computeFileDigests = false;
+	public static bool ComputeFileDigests
+	{
+		get { return m_computeFileDigests; }
+		set
+		{
+			m_computeFileDigests = value;
+#if !UNITY_EDITOR && UNITY_ANDROID
+			AJC.SetStatic<bool>( "ComputeFileDigests", value );
+#endif
+		}
+	}
+
+	// When enabled, exported documents are read back after they're written and their SHA-256 digests are compared with the exported files' digests.
+	// Mismatching documents are exported again. Failed transfers are resumed from the last written chunk only while this is enabled (Android only)
+	private static bool m_verifyExportedFiles = false;
+	public static bool VerifyExportedFiles
+	{
+		get { return m_verifyExportedFiles; }
+		set
+		{
+			m_verifyExportedFiles = value;
+#if !UNITY_EDITOR && UNITY_ANDROID
+			AJC.SetStatic<bool>( "VerifyExportedFiles", value );
+#endif
+		}
+	}
+
+	// When enabled, picked files that are on the same filesystem as the app's cache (e.g. files in the app's own storage) are hard linked instead of
+	// copied, which is instant and doesn't use extra storage. But modifying (or overwriting) a linked file also modifies the original file (Android only)
+	private static bool m_linkPickedFiles = false;
+	public static bool LinkPickedFiles
+	{
+		get { return m_linkPickedFiles; }
+		set
+		{
+			m_linkPickedFiles = value;
+#if !UNITY_EDITOR && UNITY_ANDROID
+			AJC.SetStatic<bool>( "LinkPickedFiles", value );
+#endif
+		}
+	}
 
 	#region Platform Specific Elements
 #if !UNITY_EDITOR && UNITY_ANDROID
@@ -78,6 +183,18 @@ public static class NativeFilePicker
 			return m_selectedFilePath;
 		}
 	}
+
+	private static string m_selectedFolderPath = null;
+	private static string SelectedFolderPath
+	{
+		get
+		{
+			if( m_selectedFolderPath == null )
+				m_selectedFolderPath = Path.Combine( Application.temporaryCachePath, "pickedFolder" );
+
+			return m_selectedFolderPath;
+		}
+	}
 #endif
 
 	#region Runtime Permissions
@@ -127,6 +244,17 @@ public static class NativeFilePicker
 #endif
 	}
 
+	public static bool CanPickFolder()
+	{
+#if UNITY_EDITOR
+		return true;
+#elif UNITY_ANDROID
+		return AJC.CallStatic<bool>( "CanPickFolder" );
+#else
+		return false;
+#endif
+	}
+
 	public static bool CanExportFiles()
 	{
 #if UNITY_EDITOR
@@ -296,6 +424,110 @@ public static class NativeFilePicker
 				callback( null );
 		}, true );
 	}
+
+	public static void PickFileWithInfo( FilePickedWithInfoCallback callback, params string[] allowedFileTypes )
+	{
+#if !UNITY_EDITOR && UNITY_ANDROID
+		// If no file type is specified, allow all file types
+		if( allowedFileTypes == null || allowedFileTypes.Length == 0 )
+			allowedFileTypes = new string[] { "*/*" };
+
+		RequestPermissionAsync( ( permission ) =>
+		{
+			if( permission != Permission.Granted || IsFilePickerBusy() )
+			{
+				callback?.Invoke( null );
+				return;
+			}
+
+			AJC.CallStatic( "PickFiles", Context, new FPResultCallbackAndroid( null, null, null, pickInfoCallback: callback ), false, SelectedFilePath, allowedFileTypes, "" );
+		}, true );
+#else
+		// On other platforms, file information is retrieved from the picked file itself
+		PickFile( ( path ) => callback?.Invoke( !string.IsNullOrEmpty( path ) ? new PickedFile( path ) : null ), allowedFileTypes );
+#endif
+	}
+
+	public static void PickMultipleFilesWithInfo( MultipleFilesPickedWithInfoCallback callback, params string[] allowedFileTypes )
+	{
+#if !UNITY_EDITOR && UNITY_ANDROID
+		// If no file type is specified, allow all file types
+		if( allowedFileTypes == null || allowedFileTypes.Length == 0 )
+			allowedFileTypes = new string[] { "*/*" };
+
+		RequestPermissionAsync( ( permission ) =>
+		{
+			if( permission != Permission.Granted || IsFilePickerBusy() || !CanPickMultipleFiles() )
+			{
+				callback?.Invoke( null );
+				return;
+			}
+
+			AJC.CallStatic( "PickFiles", Context, new FPResultCallbackAndroid( null, null, null, pickInfoCallbackMultiple: callback ), true, SelectedFilePath, allowedFileTypes, "" );
+		}, true );
+#else
+		// On other platforms, file information is retrieved from the picked files themselves
+		PickMultipleFiles( ( paths ) =>
+		{
+			if( callback == null )
+				return;
+
+			PickedFile[] files = null;
+			if( paths != null )
+			{
+				files = new PickedFile[paths.Length];
+				for( int i = 0; i < paths.Length; i++ )
+					files[i] = new PickedFile( paths[i] );
+			}
+
+			callback( files );
+		}, allowedFileTypes );
+#endif
+	}
+
+	public static void PickFileStream( FileStreamPickedCallback callback, params string[] allowedFileTypes )
+	{
+#if !UNITY_EDITOR && UNITY_ANDROID
+		// If no file type is specified, allow all file types
+		if( allowedFileTypes == null || allowedFileTypes.Length == 0 )
+			allowedFileTypes = new string[] { "*/*" };
+
+		RequestPermissionAsync( ( permission ) =>
+		{
+			if( permission != Permission.Granted || IsFilePickerBusy() )
+			{
+				callback?.Invoke( null );
+				return;
+			}
+
+			AJC.CallStatic( "PickFileStream", Context, new FPResultCallbackAndroid( null, null, null, callback ), allowedFileTypes, "" );
+		}, true );
+#else
+		// On other platforms, the picked file is read from its accessible path (on iOS, it's the copy created by the document picker)
+		PickFile( ( path ) => callback?.Invoke( !string.IsNullOrEmpty( path ) ? File.OpenRead( path ) : null ), allowedFileTypes );
+#endif
+	}
+
+	public static void PickFolder( FolderPickedCallback callback )
+	{
+		RequestPermissionAsync( ( permission ) =>
+		{
+			if( permission != Permission.Granted || IsFilePickerBusy() || !CanPickFolder() )
+			{
+				callback?.Invoke( null );
+				return;
+			}
+
+#if UNITY_EDITOR
+			string pickedFolder = UnityEditor.EditorUtility.OpenFolderPanel( "Select folder", "", "" );
+
+			if( callback != null )
+				callback( pickedFolder != "" ? pickedFolder : null );
+#elif UNITY_ANDROID
+			AJC.CallStatic( "PickFolder", Context, new FPResultCallbackAndroid( null, null, null, pickFolderCallback: callback ), SelectedFolderPath, "" );
+#endif
+		}, true );
+	}
 	#endregion
 
 	#region Export Functions
@@ -356,7 +588,84 @@ public static class NativeFilePicker
 		}, false );
 	}
 
-	public static void ExportMultipleFiles( string[] filePaths, FilesExportedCallback callback = null )
+	// Exports generated content (e.g. a screenshot or save data) without writing it to a file first. If mimeType is null, it's determined from filename's extension
+	public static void ExportFile( byte[] bytes, string filename, FilesExportedCallback callback = null, string mimeType = null )
+	{
+		if( bytes == null )
+			throw new ArgumentNullException( "bytes" );
+
+		if( string.IsNullOrEmpty( filename ) )
+			throw new ArgumentException( "Parameter 'filename' is null or empty!" );
+
+		// Only the name is used, it must not point outside the directory that the bytes are written to (i.e. on iOS)
+		filename = Path.GetFileName( filename );
+		if( string.IsNullOrEmpty( filename ) )
+			throw new ArgumentException( "Parameter 'filename' doesn't contain a filename!" );
+
+		if( !CanExportFiles() || IsFilePickerBusy() )
+		{
+			if( callback != null )
+				callback( false );
+
+			return;
+		}
+
+#if UNITY_EDITOR
+		string extension = Path.GetExtension( filename );
+		if( extension == null )
+			extension = "";
+		else if( extension.IndexOf( '.' ) == 0 )
+			extension = extension.Substring( 1 );
+
+		string destination = UnityEditor.EditorUtility.SaveFilePanel( "Select destination", "", filename, extension );
+		if( string.IsNullOrEmpty( destination ) )
+		{
+			if( callback != null )
+				callback( false );
+		}
+		else
+		{
+			try
+			{
+				File.WriteAllBytes( destination, bytes );
+
+				if( callback != null )
+					callback( true );
+			}
+			catch( Exception e )
+			{
+				Debug.LogException( e );
+
+				if( callback != null )
+					callback( false );
+			}
+		}
+#elif UNITY_ANDROID
+		AJC.CallStatic( "ExportBytes", Context, new FPResultCallbackAndroid( null, null, callback ), bytes, filename, mimeType ?? "" );
+#elif UNITY_IOS
+		// iOS plugin can only export files, so the bytes are written to a temporary file first
+		string filePath = Path.Combine( Application.temporaryCachePath, filename );
+		File.WriteAllBytes( filePath, bytes );
+
+		FPResultCallbackiOS.Initialize( null, null, ( success ) =>
+		{
+			try
+			{
+				File.Delete( filePath );
+			}
+			catch( Exception e )
+			{
+				Debug.LogException( e );
+			}
+
+			if( callback != null )
+				callback( success );
+		} );
+		_NativeFilePicker_ExportFiles( new string[1] { filePath }, 1 );
+#endif
+	}
+
+	public static void ExportMultipleFiles( string[] filePaths, FilesExportedCallback callback = null, ExportConflictPolicy conflictPolicy = ExportConflictPolicy.Rename )
 	{
 		if( filePaths == null || filePaths.Length == 0 )
 			throw new ArgumentException( "Parameter 'filePaths' is null or empty!" );
@@ -383,7 +692,22 @@ public static class NativeFilePicker
 					try
 					{
 						for( int i = 0; i < filePaths.Length; i++ )
-							File.Copy( filePaths[i], Path.Combine( destination, Path.GetFileName( filePaths[i] ) ), true );
+						{
+							string destinationFile = Path.Combine( destination, Path.GetFileName( filePaths[i] ) );
+							if( File.Exists( destinationFile ) )
+							{
+								if( conflictPolicy == ExportConflictPolicy.Rename )
+								{
+									string filename = Path.GetFileNameWithoutExtension( filePaths[i] ), extension = Path.GetExtension( filePaths[i] );
+									for( int suffix = 1; File.Exists( destinationFile ); suffix++ )
+										destinationFile = Path.Combine( destination, filename + " (" + suffix + ")" + extension );
+								}
+								else if( conflictPolicy == ExportConflictPolicy.SkipIfIdentical && new FileInfo( destinationFile ).Length == new FileInfo( filePaths[i] ).Length && File.GetLastWriteTimeUtc( destinationFile ) >= File.GetLastWriteTimeUtc( filePaths[i] ) )
+									continue;
+							}
+
+							File.Copy( filePaths[i], destinationFile, true );
+						}
 
 						if( callback != null )
 							callback( true );
@@ -397,7 +721,7 @@ public static class NativeFilePicker
 					}
 				}
 #elif UNITY_ANDROID
-				AJC.CallStatic( "ExportFiles", Context, new FPResultCallbackAndroid( null, null, callback ), filePaths, filePaths.Length );
+				AJC.CallStatic( "ExportFiles", Context, new FPResultCallbackAndroid( null, null, callback ), filePaths, (int) conflictPolicy, filePaths.Length );
 #elif UNITY_IOS
 				FPResultCallbackiOS.Initialize( null, null, callback );
 				_NativeFilePicker_ExportFiles( filePaths, filePaths.Length );